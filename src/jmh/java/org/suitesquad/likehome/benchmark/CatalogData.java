@@ -0,0 +1,122 @@
+package org.suitesquad.likehome.benchmark;
+
+import org.suitesquad.likehome.model.Hotel;
+import org.suitesquad.likehome.model.Reservation;
+import org.suitesquad.likehome.model.Room;
+
+import java.lang.reflect.Field;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Deterministic synthetic catalog, so benchmark runs are comparable offline and across machines.
+ */
+final class CatalogData {
+    private static final String[] CITIES = {"San Jose", "Seattle", "Austin", "Denver", "Boston", "Miami", "Chicago"};
+    private static final String[] STATES = {"California", "Washington", "Texas", "Colorado", "Massachusetts", "Florida", "Illinois"};
+    private static final String[] ROOM_NAMES = {"Basic Suite", "Oceanside Deluxe", "Family Room", "Penthouse", "Studio"};
+
+    private CatalogData() {}
+
+    static List<Hotel> hotels(int count) {
+        var random = new Random(42);
+        var hotels = new ArrayList<Hotel>(count);
+        for (int i = 0; i < count; i++) {
+            var location = new Hotel.Location();
+            int place = random.nextInt(CITIES.length);
+            location.setStreetAddress(i + " Main St");
+            location.setCity(CITIES[place]);
+            location.setState(STATES[place]);
+            location.setCountry("United States");
+            location.setZipCode(String.format("%05d", random.nextInt(100000)));
+
+            var hotel = new Hotel();
+            hotel.setId(id("hotel", i));
+            hotel.setName("Hotel " + i);
+            hotel.setDescription("A synthetic hotel used for benchmarking, number " + i + ".");
+            hotel.setRating(Math.round(random.nextDouble() * 50) / 10.0);
+            hotel.setReviewCount(random.nextInt(500));
+            hotel.setLocation(location);
+            hotel.setAmenities(List.of("WiFi", "Pool", "Parking"));
+            hotel.setImageUrls(List.of("https://example.com/hotels/" + i + "/1.jpg",
+                    "https://example.com/hotels/" + i + "/2.jpg"));
+            hotels.add(hotel);
+        }
+        return hotels;
+    }
+
+    static List<Room> rooms(List<Hotel> hotels, int roomsPerHotel) {
+        var random = new Random(7);
+        var rooms = new ArrayList<Room>(hotels.size() * roomsPerHotel);
+        for (Hotel hotel : hotels) {
+            for (int i = 0; i < roomsPerHotel; i++) {
+                rooms.add(room(hotel.getId(), rooms.size(), random));
+            }
+        }
+        return rooms;
+    }
+
+    static Room room(String hotelId, int i, Random random) {
+        var policy = new Room.CancellationPolicy();
+        policy.setAllowed(random.nextBoolean());
+        policy.setPenaltyFee(random.nextInt(100));
+
+        var room = new Room();
+        room.setId(id("room", i));
+        room.setHotelId(hotelId);
+        room.setName(ROOM_NAMES[random.nextInt(ROOM_NAMES.length)]);
+        room.setBaths(1 + random.nextInt(3));
+        room.setBeds(1 + random.nextInt(4));
+        room.setGuests(1 + random.nextInt(8));
+        room.setBedrooms(1 + random.nextInt(3));
+        room.setDescription("A synthetic room used for benchmarking.");
+        room.setPricePerNight(50 + random.nextInt(950));
+        room.setCleaningFee(random.nextInt(100));
+        room.setServiceFee(random.nextInt(50));
+        room.setTaxRate(0.05 + random.nextInt(10) / 100.0);
+        room.setAvailability(1 + random.nextInt(5));
+        room.setImageUrls(List.of("https://example.com/rooms/" + i + ".jpg"));
+        room.setAmenities(List.of("TV", "Air Conditioning"));
+        room.setCancellationPolicy(policy);
+        return room;
+    }
+
+    static List<Reservation> reservations(int count) {
+        var random = new Random(11);
+        var reservations = new ArrayList<Reservation>(count);
+        for (int i = 0; i < count; i++) {
+            var payment = new Reservation.Payment();
+            payment.setPointsUsed(random.nextInt(4) == 0 ? random.nextInt(10000) : 0);
+            payment.setPaymentMethod("Card");
+            payment.setPaymentStatus("Paid");
+
+            var reservation = new Reservation();
+            reservation.setId(id("reservation", i));
+            reservation.setTotalPrice(100 + random.nextInt(5000));
+            reservation.setCheckIn(new Date());
+            reservation.setCheckOut(new Date());
+            reservation.setPayment(payment);
+            reservations.add(reservation);
+        }
+        return reservations;
+    }
+
+    /**
+     * Sets a private field, for injecting stubs into {@code @Autowired} fields without Spring.
+     */
+    static void inject(Object target, String fieldName, Object value) {
+        try {
+            Field field = target.getClass().getDeclaredField(fieldName);
+            field.setAccessible(true);
+            field.set(target, value);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String id(String prefix, int i) {
+        return String.format("%s%019d", prefix, i);
+    }
+}
@@ -0,0 +1,125 @@
+package org.suitesquad.likehome.benchmark;
+
+import com.mongodb.client.MongoClient;
+import com.mongodb.client.MongoClients;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.suitesquad.likehome.model.Hotel;
+import org.suitesquad.likehome.model.Room;
+import org.suitesquad.likehome.rest.PublicController;
+import org.suitesquad.likehome.rest.RestTypes.HotelInfo;
+import org.suitesquad.likehome.service.AvailabilityService;
+import org.suitesquad.likehome.service.HotelSearchIndex;
+import org.suitesquad.likehome.service.HotelService;
+import org.suitesquad.likehome.service.RoomService;
+
+import java.time.LocalDate;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * {@link PublicController#getAllHotels} over a catalog of {@code size} hotels with the database stubbed out: the
+ * cost of the application's own work, i.e. looking up the name and location filters in the
+ * {@link HotelSearchIndex}, building the query, filtering by availability and building the {@link HotelInfo}s.
+ * The stubbed database returns the first hotels of the catalog for every query.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HotelListingBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private MongoClient mongoClient;
+    private PublicController controller;
+    private LocalDate checkIn;
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    @Setup
+    public void setUp() {
+        List<Hotel> hotels = CatalogData.hotels(size);
+        Map<String, List<Room>> rooms = CatalogData.rooms(hotels, 1).stream()
+                .collect(Collectors.groupingBy(Room::getHotelId));
+
+        // never connects, as every query is stubbed
+        mongoClient = MongoClients.create();
+        var mongoTemplate = new MongoTemplate(mongoClient, "benchmark") {
+            @Override
+            @SuppressWarnings("unchecked")
+            public <T> List<T> find(Query query, Class<T> entityClass) {
+                return (List<T>) (query.isLimited() ? hotels.subList(0, Math.min(query.getLimit(), size)) : hotels);
+            }
+        };
+        var searchIndex = new HotelSearchIndex();
+        CatalogData.inject(searchIndex, "mongoTemplate", mongoTemplate);
+        CatalogData.inject(searchIndex, "changeStreams", true);
+        searchIndex.load();
+        var hotelService = new HotelService();
+        CatalogData.inject(hotelService, "hotelRepo", mongoTemplate);
+        CatalogData.inject(hotelService, "searchIndex", searchIndex);
+        var roomService = new RoomService() {
+            @Override
+            public List<Room> findByHotelIds(Collection<String> hotelIds) {
+                return hotelIds.stream()
+                        .flatMap(hotelId -> rooms.getOrDefault(hotelId, List.of()).stream())
+                        .toList();
+            }
+
+            @Override
+            public Map<String, List<String>> findIdsByHotelIds(Collection<String> hotelIds) {
+                return findByHotelIds(hotelIds).stream()
+                        .collect(Collectors.groupingBy(Room::getHotelId,
+                                Collectors.mapping(Room::getId, Collectors.toList())));
+            }
+        };
+        var availabilityService = new AvailabilityService();
+        CatalogData.inject(availabilityService, "roomService", roomService);
+
+        controller = new PublicController();
+        CatalogData.inject(controller, "hotelService", hotelService);
+        CatalogData.inject(controller, "roomService", roomService);
+        CatalogData.inject(controller, "availabilityService", availabilityService);
+        checkIn = LocalDate.now().plusDays(30);
+    }
+
+    @TearDown
+    public void tearDown() {
+        mongoClient.close();
+    }
+
+    @Benchmark
+    public List<HotelInfo> noFilters() {
+        return controller.getAllHotels(null, null, null, 0.0, HotelService.MAX_PAGE_SIZE, null, null, null, 0,
+                response);
+    }
+
+    @Benchmark
+    public List<HotelInfo> location() {
+        return controller.getAllHotels(null, "seattle", null, 0.0, HotelService.MAX_PAGE_SIZE, null, null, null, 0,
+                response);
+    }
+
+    @Benchmark
+    public List<HotelInfo> nameAndLocation() {
+        return controller.getAllHotels("rating", "wash", "hotel 1", 3.0, HotelService.MAX_PAGE_SIZE, null,
+                null, null, 0, response);
+    }
+
+    @Benchmark
+    public List<HotelInfo> guests() {
+        return controller.getAllHotels(null, null, null, 0.0, HotelService.MAX_PAGE_SIZE, null, null, null, 4,
+                response);
+    }
+
+    @Benchmark
+    public List<HotelInfo> datesAndGuests() {
+        return controller.getAllHotels("rating", null, null, 0.0, HotelService.MAX_PAGE_SIZE, null,
+                checkIn, checkIn.plusDays(3), 2, response);
+    }
+}
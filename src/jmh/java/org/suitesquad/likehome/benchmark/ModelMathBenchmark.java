@@ -0,0 +1,48 @@
+package org.suitesquad.likehome.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.suitesquad.likehome.model.Reservation;
+import org.suitesquad.likehome.model.Room;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Room#calculateTotalPrice} and {@link Reservation#calculatePointsGainedOrLost} over {@code size} objects.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class ModelMathBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private Room[] rooms;
+    private Reservation[] reservations;
+
+    @Setup
+    public void setUp() {
+        List<Room> roomList = CatalogData.rooms(CatalogData.hotels(1), size);
+        rooms = roomList.toArray(Room[]::new);
+        reservations = CatalogData.reservations(size).toArray(Reservation[]::new);
+    }
+
+    @Benchmark
+    public double totalPrice() {
+        double sum = 0;
+        for (int i = 0; i < rooms.length; i++) {
+            sum += rooms[i].calculateTotalPrice(1 + (i & 7));
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long pointsGainedOrLost() {
+        long sum = 0;
+        for (Reservation reservation : reservations) {
+            sum += reservation.calculatePointsGainedOrLost();
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,73 @@
+package org.suitesquad.likehome.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.suitesquad.likehome.model.Hotel;
+import org.suitesquad.likehome.model.Room;
+import org.suitesquad.likehome.rest.PublicController;
+import org.suitesquad.likehome.service.AvailabilityService;
+import org.suitesquad.likehome.service.HotelService;
+import org.suitesquad.likehome.service.RoomIndex;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The filters of {@link PublicController#getHotelRooms} over a hotel with {@code size} rooms,
+ * with the database stubbed out.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RoomFilterBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private PublicController controller;
+    private String hotelId;
+    private LocalDate checkIn;
+
+    @Setup
+    public void setUp() {
+        Hotel hotel = CatalogData.hotels(1).getFirst();
+        hotelId = hotel.getId();
+        List<Room> rooms = CatalogData.rooms(List.of(hotel), size);
+
+        var hotelService = new HotelService() {
+            @Override
+            public boolean existsById(String id) {
+                return true;
+            }
+        };
+        var roomIndex = new RoomIndex();
+        roomIndex.index(rooms);
+        var availabilityService = new AvailabilityService();
+
+        controller = new PublicController();
+        CatalogData.inject(controller, "hotelService", hotelService);
+        CatalogData.inject(controller, "roomIndex", roomIndex);
+        CatalogData.inject(controller, "availabilityService", availabilityService);
+        checkIn = LocalDate.now().plusDays(30);
+    }
+
+    @Benchmark
+    public List<Room> noFilters() {
+        return controller.getHotelRooms(hotelId, null, null, 0, 0, 0, 0, 0.0, null, null, null);
+    }
+
+    @Benchmark
+    public List<Room> allFilters() {
+        return controller.getHotelRooms(hotelId, null, "suite", 1, 2, 2, 1, 100.0, 800.0, null, null);
+    }
+
+    @Benchmark
+    public List<Room> sortedByPrice() {
+        return controller.getHotelRooms(hotelId, "price", null, 0, 2, 2, 0, 0.0, null, null, null);
+    }
+
+    @Benchmark
+    public List<Room> dates() {
+        return controller.getHotelRooms(hotelId, null, null, 0, 0, 2, 0, 0.0, null, checkIn, checkIn.plusDays(3));
+    }
+}
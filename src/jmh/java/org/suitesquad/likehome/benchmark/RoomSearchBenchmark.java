@@ -0,0 +1,60 @@
+package org.suitesquad.likehome.benchmark;
+
+import org.openjdk.jmh.annotations.*;
+import org.suitesquad.likehome.model.Room;
+import org.suitesquad.likehome.service.RoomIndex;
+
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.apache.commons.lang3.StringUtils.containsIgnoreCase;
+
+/**
+ * A search for rooms across all hotels, {@code size} rooms in total (10 per hotel), sorted by price: the
+ * {@link RoomIndex} against the predicate chain over {@link Room} objects it replaced.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class RoomSearchBenchmark {
+    private static final RoomIndex.Filter FILTER = new RoomIndex.Filter("suite", 1, 2, 2, 1, 100, 800);
+
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private List<Room> rooms;
+    private RoomIndex index;
+
+    @Setup
+    public void setUp() {
+        rooms = CatalogData.rooms(CatalogData.hotels(Math.max(1, size / 10)), 10);
+        index = new RoomIndex();
+        index.index(rooms);
+    }
+
+    @Benchmark
+    public List<Room> index() {
+        return index.find(null, FILTER, true, 50);
+    }
+
+    @Benchmark
+    public List<Room> indexNameOnly() {
+        return index.find(null, new RoomIndex.Filter("suite", 0, 0, 0, 0, 0, Double.POSITIVE_INFINITY), true, 50);
+    }
+
+    @Benchmark
+    public List<Room> predicates() {
+        return rooms.stream()
+                .filter(room -> containsIgnoreCase(room.getName(), FILTER.name()))
+                .filter(room -> room.getBaths() >= FILTER.minBaths())
+                .filter(room -> room.getBeds() >= FILTER.minBeds())
+                .filter(room -> room.getGuests() >= FILTER.minGuests())
+                .filter(room -> room.getBedrooms() >= FILTER.minBedrooms())
+                .filter(room -> room.getPricePerNight() >= FILTER.minPrice())
+                .filter(room -> room.getPricePerNight() <= FILTER.maxPrice())
+                .sorted(Comparator.comparingDouble(Room::getPricePerNight))
+                .limit(50)
+                .toList();
+    }
+}
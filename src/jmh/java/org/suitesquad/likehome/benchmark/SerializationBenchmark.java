@@ -0,0 +1,53 @@
+package org.suitesquad.likehome.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.suitesquad.likehome.model.Hotel;
+import org.suitesquad.likehome.model.Room;
+import org.suitesquad.likehome.rest.RestTypes.HotelInfo;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Jackson serialization of the {@code /hotels} and {@code /hotels/{hotelId}/rooms} response bodies with
+ * {@code size} entries, written to a discarding stream as Spring MVC would write them to the response.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SerializationBenchmark {
+
+    @Param({"100", "10000", "1000000"})
+    public int size;
+
+    private final ObjectMapper mapper = Jackson2ObjectMapperBuilder.json().build();
+    private List<HotelInfo> hotelInfos;
+    private List<Room> rooms;
+
+    @Setup
+    public void setUp() {
+        List<Hotel> hotels = CatalogData.hotels(size);
+        rooms = CatalogData.rooms(hotels, 1);
+        Map<String, List<String>> roomIds = rooms.stream()
+                .collect(Collectors.groupingBy(Room::getHotelId, Collectors.mapping(Room::getId, Collectors.toList())));
+        hotelInfos = hotels.stream()
+                .map(hotel -> HotelInfo.of(hotel, roomIds.getOrDefault(hotel.getId(), List.of())))
+                .toList();
+    }
+
+    @Benchmark
+    public void hotelInfos() throws IOException {
+        mapper.writeValue(OutputStream.nullOutputStream(), hotelInfos);
+    }
+
+    @Benchmark
+    public void rooms() throws IOException {
+        mapper.writeValue(OutputStream.nullOutputStream(), rooms);
+    }
+}
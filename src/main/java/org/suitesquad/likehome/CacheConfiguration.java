@@ -0,0 +1,96 @@
+package org.suitesquad.likehome;
+
+import com.mongodb.client.model.changestream.ChangeStreamDocument;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.bson.Document;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.EnableCaching;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.messaging.ChangeStreamRequest;
+import org.springframework.data.mongodb.core.messaging.DefaultMessageListenerContainer;
+import org.springframework.data.mongodb.core.messaging.MessageListener;
+import org.springframework.data.mongodb.core.messaging.MessageListenerContainer;
+import org.suitesquad.likehome.service.CatalogChangedEvent;
+
+import java.util.Optional;
+
+import static org.suitesquad.likehome.service.CatalogChangedEvent.HOTELS;
+import static org.suitesquad.likehome.service.CatalogChangedEvent.ROOMS;
+
+/**
+ * Caches the hotel and room catalog in memory. See application.properties for the size and TTL.
+ * <ul>
+ *     <li>hotel: hotels by ID</li>
+ *     <li>room: rooms by ID</li>
+ * </ul>
+ * Entries are evicted on every {@link CatalogChangedEvent}.
+ * The userFirstNames cache is managed by {@link org.suitesquad.likehome.service.UserService}.
+ */
+@Configuration
+@EnableCaching
+public class CacheConfiguration {
+
+    private final CacheManager cacheManager;
+
+    public CacheConfiguration(CacheManager cacheManager) {
+        this.cacheManager = cacheManager;
+    }
+
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE) // before CatalogVersionService hands out the new version
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        switch (event.collection()) {
+            case HOTELS -> evict("hotel", event.id());
+            case ROOMS -> evict("room", event.id());
+            default -> {}
+        }
+    }
+
+    private void evict(String cacheName, String key) {
+        Optional.ofNullable(cacheManager.getCache(cacheName)).ifPresent(cache -> {
+            if (key == null) {
+                cache.clear();
+            } else {
+                cache.evict(key);
+            }
+        });
+    }
+
+    /**
+     * Listens to the hotels and rooms change streams so that writes made by other instances
+     * (or directly in the database) also invalidate this instance's cache.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "likehome.cache.change-streams", havingValue = "true")
+    public MessageListenerContainer catalogChangeStreams(MongoTemplate mongoTemplate,
+                                                         ApplicationEventPublisher publisher) {
+        var container = new DefaultMessageListenerContainer(mongoTemplate);
+        for (String collection : new String[]{HOTELS, ROOMS}) {
+            MessageListener<ChangeStreamDocument<Document>, Document> listener = message -> {
+                BsonDocument key = message.getRaw() == null ? null : message.getRaw().getDocumentKey();
+                publisher.publishEvent(new CatalogChangedEvent(collection,
+                        key == null ? null : idToString(key.get("_id"))));
+            };
+            container.register(ChangeStreamRequest.builder(listener).collection(collection).build(), Document.class);
+        }
+        container.start();
+        return container;
+    }
+
+    private static String idToString(BsonValue id) {
+        if (id == null) {
+            return null;
+        }
+        return id.isObjectId() ? id.asObjectId().getValue().toHexString()
+                : id.isString() ? id.asString().getValue()
+                : null;
+    }
+}
@@ -0,0 +1,113 @@
+package org.suitesquad.likehome;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.lang.NonNull;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Caches the tokens verified by another decoder, so a client sending the same bearer token on every request
+ * only has its signature checked once. Tokens are cached by their SHA-256 hash until they expire, and for at
+ * most maxTtl so that tokens signed with a rotated-out key don't stay trusted for long. Tokens without an
+ * expiry and rejected tokens are not cached.
+ * <p>
+ * Decoding is timed as likehome.jwt.decode, tagged with whether the cache was hit and whether the token was valid.
+ * The cache itself is monitored as cache.* with cache=jwts.
+ */
+public class CachingJwtDecoder implements JwtDecoder {
+    private final JwtDecoder delegate;
+    private final Cache<String, Jwt> cache;
+    private final Timer hits;
+    private final Timer misses;
+    private final Timer rejected;
+
+    /**
+     * @param maxSize the most tokens to cache
+     * @param maxTtl  the longest time to cache a token for
+     */
+    public CachingJwtDecoder(JwtDecoder delegate, MeterRegistry registry, long maxSize, Duration maxTtl) {
+        this.delegate = delegate;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maxSize)
+                .expireAfter(new UntilExpiry(maxTtl))
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "jwts");
+        hits = timer(registry, "hit", "valid");
+        misses = timer(registry, "miss", "valid");
+        rejected = timer(registry, "miss", "invalid");
+    }
+
+    @Override
+    public Jwt decode(String token) throws JwtException {
+        long start = System.nanoTime();
+        String key = hash(token);
+        Jwt jwt = cache.getIfPresent(key);
+        if (jwt != null && jwt.getExpiresAt().isAfter(Instant.now())) {
+            hits.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return jwt;
+        }
+        try {
+            jwt = delegate.decode(token);
+        } catch (JwtException e) {
+            rejected.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+        if (jwt.getExpiresAt() != null && jwt.getExpiresAt().isAfter(Instant.now())) {
+            cache.put(key, jwt);
+        }
+        misses.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        return jwt;
+    }
+
+    private static Timer timer(MeterRegistry registry, String cache, String outcome) {
+        return Timer.builder("likehome.jwt.decode")
+                .tag("cache", cache)
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private static String hash(String token) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(token.getBytes(StandardCharsets.US_ASCII));
+            return Base64.getEncoder().encodeToString(digest);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e); // every JVM has SHA-256
+        }
+    }
+
+    /**
+     * Expires tokens when they expire, or after maxTtl if that's sooner.
+     */
+    private record UntilExpiry(Duration maxTtl) implements Expiry<String, Jwt> {
+        @Override
+        public long expireAfterCreate(@NonNull String key, @NonNull Jwt jwt, long currentTime) {
+            Duration untilExpiry = Duration.between(Instant.now(), jwt.getExpiresAt());
+            return Math.max(0, Math.min(untilExpiry.toNanos(), maxTtl.toNanos()));
+        }
+
+        @Override
+        public long expireAfterUpdate(@NonNull String key, @NonNull Jwt jwt, long currentTime, long currentDuration) {
+            return expireAfterCreate(key, jwt, currentTime);
+        }
+
+        @Override
+        public long expireAfterRead(@NonNull String key, @NonNull Jwt jwt, long currentTime, long currentDuration) {
+            return currentDuration;
+        }
+    }
+}
@@ -0,0 +1,39 @@
+package org.suitesquad.likehome;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.CacheControl;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.suitesquad.likehome.rest.CatalogETagInterceptor;
+import org.suitesquad.likehome.rest.HotelListingCache;
+import org.suitesquad.likehome.service.CatalogVersionService;
+
+import java.time.Duration;
+
+@Configuration
+public class HttpCacheConfiguration {
+
+    /**
+     * ETags and Cache-Control for the public catalog endpoints. Browsers and CDNs may serve responses for maxAge
+     * seconds, then revalidate them with If-None-Match. Requests that aren't answered with 304 Not Modified can
+     * then be answered from the {@link HotelListingCache}.
+     */
+    @Bean
+    public WebMvcConfigurer catalogETags(CatalogVersionService versions, HotelListingCache hotelListingCache,
+                                         @Value("${likehome.http-cache.max-age}") long maxAge) {
+        var interceptor = new CatalogETagInterceptor(versions,
+                CacheControl.maxAge(Duration.ofSeconds(maxAge)).cachePublic().mustRevalidate());
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(@NonNull InterceptorRegistry registry) {
+                registry.addInterceptor(interceptor)
+                        .addPathPatterns("/hotels", "/hotels/*", "/hotels/*/rooms", "/hotels/*/rooms/*", "/rooms");
+                registry.addInterceptor(hotelListingCache)
+                        .addPathPatterns("/hotels");
+            }
+        };
+    }
+}
@@ -0,0 +1,101 @@
+package org.suitesquad.likehome;
+
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.source.ImmutableJWKSet;
+import com.nimbusds.jose.jwk.source.JWKSource;
+import com.nimbusds.jose.jwk.source.JWKSourceBuilder;
+import com.nimbusds.jose.proc.JWSVerificationKeySelector;
+import com.nimbusds.jose.proc.SecurityContext;
+import com.nimbusds.jwt.proc.DefaultJWTProcessor;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.security.oauth2.core.DelegatingOAuth2TokenValidator;
+import org.springframework.security.oauth2.jwt.*;
+import org.springframework.util.ResourceUtils;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.net.URI;
+import java.net.URL;
+import java.text.ParseException;
+import java.time.Duration;
+import java.util.List;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+@Configuration
+public class JwtConfiguration {
+
+    /**
+     * Verifies bearer tokens as Spring Boot's default decoder does (an RS256 signature by a key of the JWK set,
+     * the expiry, the issuer and the audience), but:
+     * <ul>
+     *     <li>caches verified tokens (see {@link CachingJwtDecoder})</li>
+     *     <li>caches the JWK set for jwkSetTtl seconds, refreshing it in the background shortly before it expires
+     *         instead of on a request</li>
+     *     <li>falls back to the keys in jwkSetFile (a path or classpath: location) when the JWK set can't be
+     *         fetched, or uses only those if there is no jwk-set-uri</li>
+     * </ul>
+     * The JWK set is first fetched on the first verification, so starting the application needs no network.
+     */
+    @Bean
+    public JwtDecoder jwtDecoder(
+            MeterRegistry registry,
+            @Value("${spring.security.oauth2.resourceserver.jwt.jwk-set-uri:}") String jwkSetUri,
+            @Value("${spring.security.oauth2.resourceserver.jwt.issuer-uri}") String issuer,
+            @Value("${spring.security.oauth2.resourceserver.jwt.audiences}") List<String> audiences,
+            @Value("${likehome.jwt.jwk-set.file}") String jwkSetFile,
+            @Value("${likehome.jwt.jwk-set.ttl-seconds}") long jwkSetTtl,
+            @Value("${likehome.jwt.cache.max-size}") long cacheSize,
+            @Value("${likehome.jwt.cache.max-ttl-seconds}") long cacheTtl) {
+        var processor = new DefaultJWTProcessor<>();
+        processor.setJWSKeySelector(new JWSVerificationKeySelector<>(JWSAlgorithm.RS256,
+                jwkSource(jwkSetUri, jwkSetFile, Duration.ofSeconds(jwkSetTtl))));
+        processor.setJWTClaimsSetVerifier((claims, context) -> {}); // the validators below check the claims
+        var decoder = new NimbusJwtDecoder(processor);
+        decoder.setJwtValidator(new DelegatingOAuth2TokenValidator<>(
+                JwtValidators.createDefaultWithIssuer(issuer),
+                new JwtClaimValidator<List<String>>(JwtClaimNames.AUD,
+                        audience -> audience != null && audience.stream().anyMatch(audiences::contains))));
+        return new CachingJwtDecoder(decoder, registry, cacheSize, Duration.ofSeconds(cacheTtl));
+    }
+
+    static JWKSource<SecurityContext> jwkSource(String jwkSetUri, String jwkSetFile, Duration ttl) {
+        JWKSource<SecurityContext> file = isBlank(jwkSetFile) ? null : new ImmutableJWKSet<>(load(jwkSetFile));
+        if (isBlank(jwkSetUri)) {
+            if (file == null) {
+                throw new IllegalStateException("A JWK set URI or file is required to verify tokens");
+            }
+            return file;
+        }
+        URL url;
+        try {
+            url = URI.create(jwkSetUri).toURL();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        var builder = JWKSourceBuilder.<SecurityContext>create(url)
+                .cache(ttl.toMillis(), JWKSourceBuilder.DEFAULT_CACHE_REFRESH_TIMEOUT)
+                .refreshAheadCache(Math.min(ttl.toMillis() / 10, Duration.ofMinutes(5).toMillis()), true)
+                .retrying(true)
+                .outageTolerant(ttl.toMillis()); // keep using the last keys during an outage
+        if (file != null) {
+            builder = builder.failover(file);
+        }
+        return builder.build();
+    }
+
+    private static JWKSet load(String location) {
+        try (InputStream in = ResourceUtils.getURL(location).openStream()) {
+            return JWKSet.load(in);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the JWK set file " + location, e);
+        } catch (ParseException e) {
+            throw new IllegalStateException("Invalid JWK set file " + location, e);
+        }
+    }
+}
@@ -0,0 +1,49 @@
+package org.suitesquad.likehome;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+/**
+ * Metrics, scraped by Prometheus from /actuator/prometheus. Spring Boot already records:
+ * <ul>
+ *     <li>http.server.requests: a timer per endpoint, tagged with the route template</li>
+ *     <li>mongodb.driver.commands: a timer per MongoDB command, tagged with the collection</li>
+ *     <li>mongodb.driver.pool.*: connection pool size, checked out connections and waiting threads</li>
+ *     <li>cache.*: hits, misses and evictions of the caches in {@link CacheConfiguration}</li>
+ * </ul>
+ * On top of these, {@link MongoRequestMetrics} records the MongoDB round trips and documents per request, and
+ * checks them against the query budget, and {@link CachingJwtDecoder} times bearer token verification.
+ */
+@Configuration
+public class MetricsConfiguration {
+
+    @Bean
+    public MongoRequestMetrics mongoRequestMetrics(
+            MeterRegistry registry,
+            @Value("${likehome.mongo.query-budget.max-queries}") int maxQueries,
+            @Value("${likehome.mongo.query-budget.max-documents}") long maxDocuments,
+            @Value("${likehome.mongo.query-budget.strict}") boolean strict) {
+        return new MongoRequestMetrics(registry, maxQueries, maxDocuments, strict);
+    }
+
+    @Bean
+    public MongoClientSettingsBuilderCustomizer mongoRequestMetricsCustomizer(MongoRequestMetrics metrics) {
+        return settings -> settings.addCommandListener(metrics);
+    }
+
+    @Bean
+    public WebMvcConfigurer mongoRequestMetricsInterceptor(MongoRequestMetrics metrics) {
+        return new WebMvcConfigurer() {
+            @Override
+            public void addInterceptors(@NonNull InterceptorRegistry registry) {
+                registry.addInterceptor(metrics);
+            }
+        };
+    }
+}
@@ -0,0 +1,26 @@
+package org.suitesquad.likehome;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.mongo.MongoClientSettingsBuilderCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.concurrent.TimeUnit;
+
+@Configuration
+public class MongoConfiguration {
+
+    /**
+     * Sizes the driver's connection pool. With virtual threads every request gets its own thread, so the pool
+     * (not the servlet thread pool) is what limits concurrent queries. Requests wait at most maxWaitMs for a
+     * connection before failing.
+     */
+    @Bean
+    public MongoClientSettingsBuilderCustomizer connectionPoolCustomizer(
+            @Value("${likehome.mongo.max-pool-size}") int maxPoolSize,
+            @Value("${likehome.mongo.max-wait-ms}") long maxWaitMs) {
+        return settings -> settings.applyToConnectionPoolSettings(pool -> pool
+                .maxSize(maxPoolSize)
+                .maxWaitTime(maxWaitMs, TimeUnit.MILLISECONDS));
+    }
+}
@@ -0,0 +1,170 @@
+package org.suitesquad.likehome;
+
+import com.mongodb.event.CommandListener;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.extern.slf4j.Slf4j;
+import org.bson.BsonDocument;
+import org.bson.BsonValue;
+import org.springframework.lang.NonNull;
+import org.springframework.web.servlet.AsyncHandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * Counts the MongoDB commands sent and documents returned while handling each HTTP request, and records them
+ * per request as the likehome.mongo.round.trips (tagged by collection) and likehome.mongo.documents summaries,
+ * tagged with the route template and HTTP method. A growing count for an endpoint is an N+1 query.
+ * <p>
+ * Requests over the query budget (likehome.mongo.query-budget.*) are logged and counted as
+ * likehome.mongo.query.budget.exceeded. In strict mode, meant for tests, they are also kept in {@link #violations()}
+ * for the tests to assert on, since the response is already sent when the budget is checked.
+ * <p>
+ * Commands are attributed to the request handled on the same thread, so this covers the blocking endpoints.
+ * Streaming endpoints run their queries on other threads and are not counted.
+ */
+@Slf4j
+public class MongoRequestMetrics implements CommandListener, AsyncHandlerInterceptor {
+    private static final ThreadLocal<RequestStats> REQUEST = new ThreadLocal<>();
+
+    private final MeterRegistry registry;
+    private final int maxQueries;
+    private final long maxDocuments;
+    private final boolean strict;
+    private final List<String> violations = new CopyOnWriteArrayList<>();
+
+    /**
+     * @param maxQueries   the most commands a request may send
+     * @param maxDocuments the most documents a request may read
+     * @param strict       whether to keep the requests over budget in {@link #violations()}
+     */
+    public MongoRequestMetrics(MeterRegistry registry, int maxQueries, long maxDocuments, boolean strict) {
+        this.registry = registry;
+        this.maxQueries = maxQueries;
+        this.maxDocuments = maxDocuments;
+        this.strict = strict;
+    }
+
+    private static class RequestStats {
+        private final Map<String, Integer> roundTrips = new HashMap<>();
+        private int queries;
+        private long documents;
+    }
+
+    @Override
+    public void commandStarted(CommandStartedEvent event) {
+        RequestStats stats = REQUEST.get();
+        if (stats != null) {
+            stats.roundTrips.merge(collection(event), 1, Integer::sum);
+            stats.queries++;
+        }
+    }
+
+    @Override
+    public void commandSucceeded(CommandSucceededEvent event) {
+        RequestStats stats = REQUEST.get();
+        if (stats != null) {
+            stats.documents += documents(event.getResponse());
+        }
+    }
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                             @NonNull Object handler) {
+        REQUEST.set(new RequestStats());
+        return true;
+    }
+
+    @Override
+    public void afterConcurrentHandlingStarted(@NonNull HttpServletRequest request,
+                                               @NonNull HttpServletResponse response, @NonNull Object handler) {
+        REQUEST.remove();
+    }
+
+    @Override
+    public void afterCompletion(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                                @NonNull Object handler, Exception ex) {
+        RequestStats stats = REQUEST.get();
+        REQUEST.remove();
+        if (stats == null) {
+            return;
+        }
+        String uri = uri(request);
+        stats.roundTrips.forEach((collection, count) -> DistributionSummary.builder("likehome.mongo.round.trips")
+                .description("MongoDB commands sent per HTTP request")
+                .tag("uri", uri)
+                .tag("method", request.getMethod())
+                .tag("collection", collection)
+                .register(registry)
+                .record(count));
+        DistributionSummary.builder("likehome.mongo.documents")
+                .description("MongoDB documents read per HTTP request")
+                .tag("uri", uri)
+                .tag("method", request.getMethod())
+                .register(registry)
+                .record(stats.documents);
+        if (overBudget(stats)) {
+            registry.counter("likehome.mongo.query.budget.exceeded", "uri", uri, "method", request.getMethod())
+                    .increment();
+            String message = budgetMessage(request, stats);
+            log.warn(message);
+            if (strict) {
+                violations.add(message);
+            }
+        }
+    }
+
+    /**
+     * The requests over budget in strict mode, as messages, oldest first. Always empty otherwise.
+     */
+    public List<String> violations() {
+        return List.copyOf(violations);
+    }
+
+    private boolean overBudget(RequestStats stats) {
+        return stats.queries > maxQueries || stats.documents > maxDocuments;
+    }
+
+    private String budgetMessage(HttpServletRequest request, RequestStats stats) {
+        return "%s %s exceeded the MongoDB query budget: %d queries (max %d), %d documents (max %d), per collection %s"
+                .formatted(request.getMethod(), uri(request), stats.queries, maxQueries, stats.documents,
+                        maxDocuments, stats.roundTrips);
+    }
+
+    private static String uri(HttpServletRequest request) {
+        Object uri = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        return uri != null ? uri.toString() : "UNKNOWN";
+    }
+
+    /**
+     * The collection a command operates on. Most commands name it as their first value, getMore in a field.
+     */
+    static String collection(CommandStartedEvent event) {
+        String field = event.getCommandName().equals("getMore") ? "collection" : event.getCommandName();
+        BsonValue value = event.getCommand().get(field);
+        return value != null && value.isString() ? value.asString().getValue() : "none";
+    }
+
+    /**
+     * The number of documents a command returned: a batch of a cursor, or the document of a findAndModify.
+     */
+    static int documents(BsonDocument response) {
+        BsonValue cursor = response.get("cursor");
+        if (cursor != null && cursor.isDocument()) {
+            BsonValue batch = cursor.asDocument().containsKey("firstBatch")
+                    ? cursor.asDocument().get("firstBatch")
+                    : cursor.asDocument().get("nextBatch");
+            return batch != null && batch.isArray() ? batch.asArray().size() : 0;
+        }
+        BsonValue value = response.get("value");
+        return value != null && value.isDocument() ? 1 : 0;
+    }
+}
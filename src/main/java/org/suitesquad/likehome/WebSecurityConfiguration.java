@@ -3,12 +3,14 @@ package org.suitesquad.likehome;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.lang.NonNull;
-import org.springframework.security.config.Customizer;
 import org.springframework.security.config.annotation.web.builders.HttpSecurity;
 import org.springframework.security.config.annotation.web.configuration.EnableWebSecurity;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
+import org.springframework.security.oauth2.server.resource.authentication.JwtGrantedAuthoritiesConverter;
 import org.springframework.security.web.SecurityFilterChain;
 import org.springframework.web.servlet.config.annotation.CorsRegistry;
 import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+import org.suitesquad.likehome.rest.PublicController;
 
 @Configuration
 @EnableWebSecurity
@@ -16,20 +18,36 @@ public class WebSecurityConfiguration {
 
     /**
      * Configures Spring Security to require JWT authentication for all requests to /auth/**
+     * and the ADMIN role for all requests to /admin/** and /actuator/prometheus
      */
     @Bean
     @SuppressWarnings("Convert2MethodRef")
     public SecurityFilterChain filterChain(HttpSecurity http) throws Exception {
         return http.authorizeHttpRequests(a ->
                         a.requestMatchers("/auth/**").authenticated()
-//                         .requestMatchers("/admin/**").hasRole("ADMIN")
+                         .requestMatchers("/admin/**").hasRole("ADMIN")
+                         .requestMatchers("/actuator/prometheus").hasRole("ADMIN")
                          .anyRequest().anonymous())
                 .oauth2ResourceServer(o ->
-                        o.jwt(Customizer.withDefaults()))
+                        o.jwt(j -> j.jwtAuthenticationConverter(jwtAuthenticationConverter())))
                 .csrf(c -> c.disable())
                 .build();
     }
 
+    /**
+     * Grants the roles in the token's roles claim (a Firebase custom claim, e.g. {@code "roles": ["ADMIN"]})
+     * as ROLE_ authorities.
+     */
+    @Bean
+    public JwtAuthenticationConverter jwtAuthenticationConverter() {
+        var authorities = new JwtGrantedAuthoritiesConverter();
+        authorities.setAuthoritiesClaimName("roles");
+        authorities.setAuthorityPrefix("ROLE_");
+        var converter = new JwtAuthenticationConverter();
+        converter.setJwtGrantedAuthoritiesConverter(authorities);
+        return converter;
+    }
+
     /**
      * <a href="https://developer.mozilla.org/en-US/docs/Web/HTTP/CORS">CORS</a>
      */
@@ -40,7 +58,8 @@ public class WebSecurityConfiguration {
             public void addCorsMappings(@NonNull CorsRegistry registry) {
                 registry.addMapping("/**")
                         .allowedMethods("*")
-                        .allowedOrigins("*");
+                        .allowedOrigins("*")
+                        .exposedHeaders(PublicController.NEXT_AFTER);
             }
         };
     }
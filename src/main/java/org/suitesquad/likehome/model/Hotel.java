@@ -3,12 +3,17 @@ package org.suitesquad.likehome.model;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexType;
+import org.springframework.data.mongodb.core.index.GeoSpatialIndexed;
 import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.List;
 
 @Document("hotels")
+@CompoundIndex(name = "rating_id", def = "{'rating': -1, '_id': 1}")
 @Getter
 @Setter
 public class Hotel {
@@ -20,7 +25,17 @@ public class Hotel {
     private String name;
 
     private String description;
+    /**
+     * Average rating of the hotel's reviews, maintained by {@link org.suitesquad.likehome.service.HotelService}
+     * from reviewCount and ratingSum. Hotels without reviews have their listed rating.
+     */
     private double rating;
+    /**
+     * The rating the hotel was listed with, kept while its reviews determine the rating.
+     */
+    private Double listedRating;
+    private int reviewCount;
+    private double ratingSum;
     private Location location;
     private ContactInfo contactInfo;
     private List<String> amenities;
@@ -38,9 +53,17 @@ public class Hotel {
     @Setter
     public static class Location {
         private String streetAddress;
+        @Indexed
         private String city;
+        @Indexed
         private String state;
         private String zipCode;
+        @Indexed
         private String country;
+        /**
+         * Longitude and latitude, for searching hotels by distance.
+         */
+        @GeoSpatialIndexed(type = GeoSpatialIndexType.GEO_2DSPHERE)
+        private GeoJsonPoint coordinates;
     }
 }
@@ -0,0 +1,43 @@
+package org.suitesquad.likehome.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * Reservation totals of a hotel for the reservations checking in on one day, kept up to date by
+ * {@link org.suitesquad.likehome.service.DailyStatsService} on every reservation change so that reports never have
+ * to read the reservations.
+ * <p>
+ * Bookings count every reservation, cancelled or not. The other totals only count reservations that were not
+ * cancelled.
+ */
+@Document("hotel_daily_stats")
+@CompoundIndex(name = "hotel_day", def = "{'hotelId': 1, 'day': 1}")
+@Getter
+@Setter
+public class HotelDailyStats {
+    /**
+     * {@code hotelId:day}
+     */
+    @Id
+    private String id;
+
+    private String hotelId;
+    /**
+     * Epoch day (UTC) of the check-in
+     */
+    private long day;
+    private long bookings;
+    private long cancellations;
+    private long nights;
+    private double revenue;
+    private long pointsEarned;
+    private long pointsSpent;
+
+    public static String id(String hotelId, long day) {
+        return hotelId + ":" + day;
+    }
+}
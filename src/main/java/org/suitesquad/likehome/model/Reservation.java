@@ -19,13 +19,14 @@ public class Reservation {
     @Indexed
     private String userId;
 
-    //@Indexed
+    @Indexed
     private String hotelId;
 
-    //@Indexed
+    @Indexed
     private String roomId;
 
     private Date checkIn;
+    @Indexed
     private Date checkOut;
     private double totalPrice;
     private Date bookingDate;
@@ -44,6 +45,13 @@ public class Reservation {
     }
 
     public int calculatePointsGainedOrLost() {
-        return (int) (totalPrice - (payment.pointsUsed / 100.0)) - payment.pointsUsed;
+        return calculatePointsEarned() - payment.pointsUsed;
+    }
+
+    /**
+     * @return the points earned by paying for this reservation, before subtracting the points used
+     */
+    public int calculatePointsEarned() {
+        return (int) (totalPrice - (payment.pointsUsed / 100.0));
     }
 }
\ No newline at end of file
@@ -3,11 +3,14 @@ package org.suitesquad.likehome.model;
 import lombok.Getter;
 import lombok.Setter;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Date;
 
 @Document("reviews")
+@CompoundIndex(name = "hotel_date", def = "{'hotelId': 1, 'reviewDate': -1, '_id': -1}")
+@CompoundIndex(name = "hotel_rating", def = "{'hotelId': 1, 'rating': -1, '_id': -1}")
 @Getter
 @Setter
 public class Review {
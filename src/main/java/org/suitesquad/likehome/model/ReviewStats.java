@@ -0,0 +1,34 @@
+package org.suitesquad.likehome.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Map;
+
+/**
+ * Review aggregates of a hotel, kept up to date by {@link org.suitesquad.likehome.service.ReviewService}
+ * on every review change so that they never have to be computed from the reviews.
+ */
+@Document("review_stats")
+@Getter
+@Setter
+public class ReviewStats {
+    /**
+     * The hotel ID
+     */
+    @Id
+    private String hotelId;
+
+    private int count;
+    private double ratingSum;
+    /**
+     * Number of reviews per rating rounded to a whole star, keyed "1" to "5"
+     */
+    private Map<String, Integer> histogram;
+
+    public static String bucket(double rating) {
+        return String.valueOf(Math.max(1, Math.min(5, Math.round(rating))));
+    }
+}
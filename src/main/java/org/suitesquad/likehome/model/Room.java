@@ -15,6 +15,8 @@ public class Room {
     @Id
     @Indexed(unique = true)
     private String id;
+
+    @Indexed
     private String hotelId;
 
     private String name;    // Room Type or title (Basic Suite, Oceanside Deluxe, etc.)
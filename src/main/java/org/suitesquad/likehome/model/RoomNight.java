@@ -0,0 +1,34 @@
+package org.suitesquad.likehome.model;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * The number of booked units of a room on one night.
+ * The ID is unique per room and night, which is what makes concurrent bookings safe.
+ */
+@Document("room_nights")
+@CompoundIndex(name = "room_night", def = "{'roomId': 1, 'night': 1}")
+@Getter
+@Setter
+public class RoomNight {
+    /**
+     * {@code roomId:night}
+     */
+    @Id
+    private String id;
+
+    private String roomId;
+    /**
+     * Epoch day (UTC)
+     */
+    private long night;
+    private int bookedUnits;
+
+    public static String id(String roomId, long night) {
+        return roomId + ":" + night;
+    }
+}
@@ -0,0 +1,9 @@
+package org.suitesquad.likehome.repository;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import org.suitesquad.likehome.model.Hotel;
+
+@Repository
+public interface ReactiveHotelRepository extends ReactiveMongoRepository<Hotel, String> {
+}
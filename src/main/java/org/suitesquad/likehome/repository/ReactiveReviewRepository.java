@@ -0,0 +1,11 @@
+package org.suitesquad.likehome.repository;
+
+import org.springframework.data.mongodb.repository.ReactiveMongoRepository;
+import org.springframework.stereotype.Repository;
+import org.suitesquad.likehome.model.Review;
+import reactor.core.publisher.Flux;
+
+@Repository
+public interface ReactiveReviewRepository extends ReactiveMongoRepository<Review, String> {
+    Flux<Review> findByHotelId(String hotelId);
+}
@@ -4,6 +4,7 @@ import org.springframework.data.mongodb.repository.MongoRepository;
 import org.springframework.stereotype.Repository;
 import org.suitesquad.likehome.model.Reservation;
 
+import java.util.Date;
 import java.util.List;
 
 @Repository
@@ -11,5 +12,6 @@ public interface ReservationRepository extends MongoRepository<Reservation, Stri
     List<Reservation> findByUserId(String userId);
     List<Reservation> findByHotelId(String hotelId);
     List<Reservation> findByUserIdAndHotelId(String userId, String hotelId);
+    List<Reservation> findByCancellationDateIsNullAndCheckOutAfter(Date date);
     void deleteById(String id);
 }
\ No newline at end of file
@@ -1,8 +1,34 @@
 package org.suitesquad.likehome.rest;
 
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.tags.Tag;
-import org.springframework.web.bind.annotation.RequestMapping;
-import org.springframework.web.bind.annotation.RestController;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.caffeine.CaffeineCache;
+import org.springframework.http.HttpHeaders;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+import org.suitesquad.likehome.rest.RestTypes.CacheStatsInfo;
+import org.suitesquad.likehome.service.BulkDataService;
+import org.suitesquad.likehome.service.BulkDataService.Format;
+import org.suitesquad.likehome.service.DailyStatsService;
+import org.suitesquad.likehome.service.ReportService;
+import org.suitesquad.likehome.service.ReportService.Interval;
+import org.suitesquad.likehome.service.ReviewService;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
 
 /**
  * This class handles all administrator requests.
@@ -12,6 +38,185 @@ import org.springframework.web.bind.annotation.RestController;
 @RequestMapping("/admin")
 @Tag(name = "Admin", description = "Requires ADMIN role.")
 public class AdminController {
+
+    @Autowired private CacheManager cacheManager;
+    @Autowired private ReviewService reviewService;
+    @Autowired private BulkDataService bulkDataService;
+    @Autowired private ReportService reportService;
+    @Autowired private DailyStatsService dailyStatsService;
+    @Autowired private ObjectMapper objectMapper;
+
+    private static final int REPORT_FLUSH_ROWS = 500;
+
+    /**
+     * Get the hit, miss and eviction counts of the in-memory caches.
+     */
+    @GetMapping("/caches")
+    public Map<String, CacheStatsInfo> getCacheStats() {
+        var stats = new TreeMap<String, CacheStatsInfo>();
+        for (String name : cacheManager.getCacheNames()) {
+            if (cacheManager.getCache(name) instanceof CaffeineCache cache) {
+                var nativeCache = cache.getNativeCache();
+                var cacheStats = nativeCache.stats();
+                stats.put(name, new CacheStatsInfo(
+                        nativeCache.estimatedSize(),
+                        cacheStats.hitCount(),
+                        cacheStats.missCount(),
+                        cacheStats.evictionCount(),
+                        cacheStats.hitRate()));
+            }
+        }
+        return stats;
+    }
+
+    /**
+     * Recompute every hotel's review count, rating sum and rating histogram from the reviews.
+     * Only needed if reviews were changed without going through the API.
+     */
+    @PostMapping("/reviews/stats/rebuild")
+    public void rebuildReviewStats() {
+        reviewService.rebuildStats();
+    }
+
+    /**
+     * Recompute the daily reservation totals of every hotel, which the bookings report reads, from the reservations.
+     * Only needed if reservations were changed without going through the API.
+     */
+    @PostMapping("/stats/daily/rebuild")
+    public void rebuildDailyStats() {
+        dailyStatsService.rebuild();
+    }
+
+    /**
+     * Import hotels, rooms or reservations from the request body, as NDJSON (application/x-ndjson) or as CSV
+     * (text/csv) with a header row. See {@link BulkDataService} for the CSV columns and the validation.
+     * The progress is streamed back as NDJSON after every batch, the last line having done set to true.
+     *
+     * @param collection hotels, rooms or reservations
+     */
+    @PostMapping(path = "/import/{collection}", consumes = {MediaType.APPLICATION_NDJSON_VALUE, "text/csv"},
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void importData(@PathVariable String collection, HttpServletRequest request,
+                           HttpServletResponse response) throws IOException {
+        streamImport(collection, Format.of(request.getContentType()), request.getInputStream(), response);
+    }
+
+    /**
+     * Import hotels, rooms or reservations from an uploaded NDJSON (.ndjson or .jsonl) or CSV (.csv) file,
+     * like {@link #importData}.
+     *
+     * @param collection hotels, rooms or reservations
+     */
+    @PostMapping(path = "/import/{collection}", consumes = MediaType.MULTIPART_FORM_DATA_VALUE,
+            produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void importFile(@PathVariable String collection, @RequestParam MultipartFile file,
+                           HttpServletResponse response) throws IOException {
+        try (InputStream in = file.getInputStream()) {
+            streamImport(collection, Format.of(file.getOriginalFilename()), in, response);
+        }
+    }
+
+    private void streamImport(String collection, Format format, InputStream in, HttpServletResponse response) {
+        Consumer<Object> writeLine = ndjsonWriter(response, true);
+        try {
+            writeLine.accept(bulkDataService.importData(collection, format, in, writeLine::accept));
+        } catch (RuntimeException e) {
+            if (!response.isCommitted()) {
+                throw e;
+            }
+            writeLine.accept(Map.of("error", String.valueOf(e.getMessage())));
+        }
+    }
+
+    /**
+     * Export all hotels, rooms or reservations as NDJSON, streamed from a database cursor.
+     *
+     * @param collection hotels, rooms or reservations
+     */
+    @GetMapping(path = "/export/{collection}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void exportData(@PathVariable String collection, HttpServletResponse response) throws IOException {
+        bulkDataService.checkCollection(collection);
+        response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+        response.setHeader(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + collection + ".ndjson\"");
+        bulkDataService.export(collection, response.getOutputStream());
+    }
+
+    /**
+     * Get the booked units and occupancy of each hotel per night, for the nights from the from date up to but
+     * excluding the to date (at most a year). Nights without bookings are left out.
+     * The rows are streamed as NDJSON while the database aggregates them.
+     */
+    @GetMapping(path = "/reports/occupancy", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void getOccupancyReport(
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String hotelId,
+            HttpServletResponse response) {
+        streamReport(reportService.occupancy(from, to, hotelId), response);
+    }
+
+    /**
+     * Get the bookings, cancellations, cancellation rate, nights, revenue and redeemed reward points of each hotel,
+     * for the reservations checking in from the from date up to but excluding the to date.
+     * The rows are streamed as NDJSON while the database aggregates them.
+     *
+     * @param interval total (default), day or month: the check-in period each row covers
+     */
+    @GetMapping(path = "/reports/bookings", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public void getBookingsReport(
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE) LocalDate to,
+            @RequestParam(required = false) String hotelId,
+            @RequestParam(required = false) String interval,
+            HttpServletResponse response) {
+        streamReport(reportService.bookings(from, to, hotelId, Interval.of(interval)), response);
+    }
+
+    /**
+     * Write the rows as NDJSON, flushing every {@link #REPORT_FLUSH_ROWS} rows.
+     */
+    private void streamReport(Stream<?> rows, HttpServletResponse response) {
+        Consumer<Object> writeLine = ndjsonWriter(response, false);
+        try (rows) {
+            var written = new int[1];
+            rows.forEach(row -> {
+                writeLine.accept(row);
+                if (++written[0] % REPORT_FLUSH_ROWS == 0) {
+                    flush(response);
+                }
+            });
+        } catch (RuntimeException e) {
+            if (!response.isCommitted()) {
+                throw e;
+            }
+            writeLine.accept(Map.of("error", String.valueOf(e.getMessage())));
+        }
+        flush(response);
+    }
+
+    private Consumer<Object> ndjsonWriter(HttpServletResponse response, boolean flushEveryLine) {
+        var writer = objectMapper.writer().without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        return line -> {
+            try {
+                response.setContentType(MediaType.APPLICATION_NDJSON_VALUE);
+                writer.writeValue(response.getOutputStream(), line);
+                response.getOutputStream().write('\n');
+                if (flushEveryLine) {
+                    response.flushBuffer();
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        };
+    }
+
+    private static void flush(HttpServletResponse response) {
+        try {
+            response.flushBuffer();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
 //
 //    @Autowired private ReservationService reservationService;
 //    @Autowired private UserService userService;
@@ -29,6 +29,8 @@ public class AuthenticatedController {
     @Autowired private HotelService hotelService;
     @Autowired private ReviewService reviewService;
     @Autowired private RoomService roomService;
+    @Autowired private AvailabilityService availabilityService;
+    @Autowired private DailyStatsService dailyStatsService;
 
     /**
      * Creates a user in the database with the email and name from the SignUpInfo object
@@ -36,7 +38,7 @@ public class AuthenticatedController {
      */
     @PostMapping(path = "/signup")
     public User signUp(@RequestBody SignUpInfo info, JwtAuthenticationToken token) {
-        if (userService.findById(getUserID(token)).isPresent()) {
+        if (userService.existsById(getUserID(token))) {
             throw new RuntimeException("User already exists in database!");
         }
         var user = new User();
@@ -83,7 +85,7 @@ public class AuthenticatedController {
     /**
      * Create a reservation for this user.
      * <p>
-     * TODO: verify payment and that the room is available
+     * TODO: verify payment
      *
      * @return the created reservation's ID
      */
@@ -95,20 +97,24 @@ public class AuthenticatedController {
         if (reservationInfo.checkIn().before(new Date())) {
             throw new IllegalArgumentException("Check-in date must be in the future");
         }
-        User user = userService.findById(getUserID(token))
-                .orElseThrow(() -> new IllegalStateException("User not found in database"));
-        reservationService.findByUserId(user.getId()).stream()
-                .filter(reservation -> reservation.getCheckIn().before(reservationInfo.checkOut()) &&
+        String userId = getUserID(token);
+        if (!userService.existsById(userId)) {
+            throw new IllegalStateException("User not found in database");
+        }
+        reservationService.findByUserId(userId).stream()
+                .filter(reservation -> reservation.getCancellationDate() == null &&
+                                       reservation.getCheckIn().before(reservationInfo.checkOut()) &&
                                        reservation.getCheckOut().after(reservationInfo.checkIn()))
                 .findAny().ifPresent(reservation -> {
                     throw new IllegalArgumentException("User already has a reservation for this time period");
                 });
-        Room room = roomService.findById(reservationInfo.roomId())
+        Room room = roomService.findById(reservationInfo.roomId(),
+                        "hotelId", "pricePerNight", "cleaningFee", "serviceFee", "taxRate", "availability")
                 .orElseThrow(() -> new IllegalArgumentException("Room '" + reservationInfo.roomId() + "' not found"));
 
 
         var reservation = new Reservation();
-        reservation.setUserId(user.getId());
+        reservation.setUserId(userId);
         reservation.setHotelId(room.getHotelId());
         reservation.setRoomId(reservationInfo.roomId());
         reservation.setCheckIn(reservationInfo.checkIn());
@@ -117,12 +123,28 @@ public class AuthenticatedController {
         reservation.setBookingDate(new Date());
         reservation.setPayment(reservationInfo.payment());
 
-        int userPointsAfterReservation = user.getRewardPoints() + reservation.calculatePointsGainedOrLost();
-        if (userPointsAfterReservation < 0) {
-            throw new RuntimeException("User does not have enough points to make this reservation");
+        int points = reservation.calculatePointsGainedOrLost();
+        boolean pointsSpent = false;
+        String id;
+        availabilityService.reserve(room, reservation.getCheckIn(), reservation.getCheckOut());
+        try {
+            if (points < 0) {
+                userService.spendRewardPoints(userId, -points).orElseThrow(() ->
+                        new RuntimeException("User does not have enough points to make this reservation"));
+                pointsSpent = true;
+            }
+            id = reservationService.addReservationData(reservation).getId();
+        } catch (RuntimeException e) {
+            availabilityService.release(room.getId(), reservation.getCheckIn(), reservation.getCheckOut());
+            if (pointsSpent) {
+                userService.addRewardPoints(userId, -points);
+            }
+            throw e;
+        }
+        if (points > 0) {
+            userService.addRewardPoints(userId, points);
         }
-        String id = reservationService.addReservationData(reservation).getId();
-        userService.updateUserPoints(user.getId(), userPointsAfterReservation);
+        dailyStatsService.recordBooking(reservation);
         return id;
     }
 
@@ -159,21 +181,28 @@ public class AuthenticatedController {
     public double cancelReservation(JwtAuthenticationToken token, @PathVariable String reservationId) {
         Reservation reservation = reservationService.findById(reservationId)
                 .orElseThrow(() -> new RuntimeException("Reservation '" + reservationId + "' does not exist!"));
-        User user = userService.findById(getUserID(token))
-                .orElseThrow(() -> new RuntimeException("User not found in database"));
-        if (!reservation.getUserId().equals(user.getId())) {
+        String userId = getUserID(token);
+        if (!userService.existsById(userId)) {
+            throw new RuntimeException("User not found in database");
+        }
+        if (!reservation.getUserId().equals(userId)) {
             throw new AccessDeniedException("Reservation '" + reservationId + "' does not belong to this user!");
         }
-        Room room = roomService.findById(reservation.getRoomId())
+        if (reservation.getCancellationDate() != null) {
+            throw new RuntimeException("Reservation '" + reservationId + "' is already cancelled!");
+        }
+        Room room = roomService.findById(reservation.getRoomId(), "cancellationPolicy")
                 .orElseThrow(() -> new RuntimeException("Room '" + reservation.getRoomId() + "' not found"));
         if (!room.getCancellationPolicy().isAllowed()) {
             throw new RuntimeException("Cancellation not allowed for this reservation!");
         }
 
-        reservation.setCancellationDate(new Date());
-        reservation.getPayment().setPaymentStatus("Refunded");
-        reservationService.save(reservation);
-        userService.updateUserPoints(user.getId(), user.getRewardPoints() - reservation.calculatePointsGainedOrLost());
+        // the dates may have changed concurrently, so release the ones that were actually cancelled
+        Reservation cancelled = reservationService.cancel(reservationId, new Date())
+                .orElseThrow(() -> new RuntimeException("Reservation '" + reservationId + "' is already cancelled!"));
+        availabilityService.release(room.getId(), cancelled.getCheckIn(), cancelled.getCheckOut());
+        userService.addRewardPoints(userId, -cancelled.calculatePointsGainedOrLost());
+        dailyStatsService.recordCancellation(cancelled);
 
         return room.getCancellationPolicy().getPenaltyFee();
     }
@@ -193,23 +222,48 @@ public class AuthenticatedController {
         Reservation reservation = reservationService.findById(reservationId)
                 .orElseThrow(() -> new IllegalArgumentException("Reservation '" + reservationId + "' does not exist!"));
 
-        User user = userService.findById(getUserID(token))
-                .orElseThrow(() -> new IllegalStateException("User not found in database"));
-        if (!reservation.getUserId().equals(user.getId())) {
+        String userId = getUserID(token);
+        if (!userService.existsById(userId)) {
+            throw new IllegalStateException("User not found in database");
+        }
+        if (!reservation.getUserId().equals(userId)) {
             throw new AccessDeniedException("Reservation '" + reservationId + "' does not belong to this user!");
         }
+        if (reservation.getCancellationDate() != null) {
+            throw new IllegalArgumentException("Reservation '" + reservationId + "' is cancelled!");
+        }
 
-        reservationService.findByUserId(user.getId()).stream()
-                .filter(res -> res.getCheckIn().before(update.checkOut()) &&
+        reservationService.findByUserId(userId).stream()
+                .filter(res -> !res.getId().equals(reservationId) &&
+                               res.getCancellationDate() == null &&
+                               res.getCheckIn().before(update.checkOut()) &&
                                res.getCheckOut().after(update.checkIn()))
                 .findAny().ifPresent(res -> {
                     throw new IllegalArgumentException("User already has a reservation for this time period");
                 });
-
-        reservation.setCheckIn(update.checkIn());
-        reservation.setCheckOut(update.checkOut());
-
-        reservationService.save(reservation);
+        Room room = roomService.findById(reservation.getRoomId(), "availability")
+                .orElseThrow(() -> new IllegalStateException("Room '" + reservation.getRoomId() + "' not found"));
+
+        // the old nights are only released once the reservation has the new dates
+        availabilityService.reserveMove(room, reservation.getCheckIn(), reservation.getCheckOut(),
+                update.checkIn(), update.checkOut());
+        boolean updated;
+        try {
+            updated = reservationService.updateDates(reservationId, reservation.getCheckIn(),
+                    reservation.getCheckOut(), update.checkIn(), update.checkOut());
+        } catch (RuntimeException e) {
+            availabilityService.releaseExcept(room.getId(), update.checkIn(), update.checkOut(),
+                    reservation.getCheckIn(), reservation.getCheckOut());
+            throw e;
+        }
+        if (!updated) { // cancelled or changed concurrently
+            availabilityService.releaseExcept(room.getId(), update.checkIn(), update.checkOut(),
+                    reservation.getCheckIn(), reservation.getCheckOut());
+            throw new IllegalArgumentException("Reservation '" + reservationId + "' was cancelled or changed!");
+        }
+        availabilityService.releaseExcept(room.getId(), reservation.getCheckIn(), reservation.getCheckOut(),
+                update.checkIn(), update.checkOut());
+        dailyStatsService.recordDateChange(reservation, update.checkIn(), update.checkOut());
     }
 
     /**
@@ -219,8 +273,9 @@ public class AuthenticatedController {
      */
     @PostMapping(path = "/hotels/{hotelId}/reviews")
     public void reviewHotel(JwtAuthenticationToken token, @PathVariable String hotelId, @RequestBody ReviewUpdate reviewInfo) {
-        hotelService.findById(hotelId)
-                .orElseThrow(() -> new RuntimeException("Hotel '" + hotelId + "' not found"));
+        if (!hotelService.existsById(hotelId)) {
+            throw new RuntimeException("Hotel '" + hotelId + "' not found");
+        }
 
         if (reservationService.findByUserIdAndHotelId(getUserID(token), hotelId).isEmpty()) {
             throw new RuntimeException("User has not stayed at hotel '" + hotelId + "'");
@@ -241,8 +296,9 @@ public class AuthenticatedController {
 
     @PatchMapping("/hotels/{hotelId}/reviews")
     public void updateReviewHotel(JwtAuthenticationToken token, @PathVariable String hotelId, @RequestBody ReviewUpdate reviewInfo) {
-        hotelService.findById(hotelId)
-                .orElseThrow(() -> new RuntimeException("Hotel '" + hotelId + "' not found"));
+        if (!hotelService.existsById(hotelId)) {
+            throw new RuntimeException("Hotel '" + hotelId + "' not found");
+        }
 
         Review review = reviewService.findByHotelIdAndUserId(hotelId, getUserID(token));
         if (review == null) {
@@ -260,8 +316,9 @@ public class AuthenticatedController {
 
     @DeleteMapping("/hotels/{hotelId}/reviews")
     public void deleteHotelReview(JwtAuthenticationToken token, @PathVariable String hotelId) {
-        hotelService.findById(hotelId)
-                .orElseThrow(() -> new NoSuchElementException("Hotel '" + hotelId + "' not found"));
+        if (!hotelService.existsById(hotelId)) {
+            throw new NoSuchElementException("Hotel '" + hotelId + "' not found");
+        }
 
         Review review = reviewService.findByHotelIdAndUserId(hotelId, getUserID(token));
         if (review == null) {
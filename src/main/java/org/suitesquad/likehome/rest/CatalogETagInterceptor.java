@@ -0,0 +1,59 @@
+package org.suitesquad.likehome.rest;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.lang.NonNull;
+import org.springframework.web.context.request.ServletWebRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.HandlerMapping;
+import org.suitesquad.likehome.service.CatalogVersionService;
+
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Adds ETags and Cache-Control to the hotel and room endpoints of {@link PublicController} and
+ * {@link ReactivePublicController}, and answers conditional GETs with 304 Not Modified before the controller runs,
+ * so they don't touch the database.
+ * <p>
+ * ETags are catalog versions from {@link CatalogVersionService}: the hotel's version for paths with a hotel ID,
+ * the whole catalog's otherwise, followed by the representation (json or ndjson) of the controller that was
+ * negotiated. Requests filtering by availability are left alone, since bookings don't change the catalog version.
+ */
+public class CatalogETagInterceptor implements HandlerInterceptor {
+    private static final Set<String> AVAILABILITY_PARAMS = Set.of("checkIn", "checkOut", "guests");
+    private static final Map<Class<?>, String> REPRESENTATIONS = Map.of(
+            PublicController.class, "json",
+            ReactivePublicController.class, "ndjson");
+
+    private final CatalogVersionService versions;
+    private final CacheControl cacheControl;
+
+    public CatalogETagInterceptor(CatalogVersionService versions, CacheControl cacheControl) {
+        this.versions = versions;
+        this.cacheControl = cacheControl;
+    }
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                             @NonNull Object handler) {
+        String representation = handler instanceof HandlerMethod method
+                ? REPRESENTATIONS.get(method.getBeanType()) : null;
+        if (representation == null ||
+            !("GET".equals(request.getMethod()) || "HEAD".equals(request.getMethod())) ||
+            AVAILABILITY_PARAMS.stream().anyMatch(param -> request.getParameter(param) != null)) {
+            return true;
+        }
+        @SuppressWarnings("unchecked")
+        var pathVariables = (Map<String, String>) request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        String hotelId = pathVariables == null ? null : pathVariables.get("hotelId");
+        String version = hotelId == null ? versions.catalogVersion() : versions.hotelVersion(hotelId);
+
+        response.setHeader(HttpHeaders.CACHE_CONTROL, cacheControl.getHeaderValue());
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT); // the same paths also stream ndjson
+        return !new ServletWebRequest(request, response).checkNotModified(version + "-" + representation);
+    }
+}
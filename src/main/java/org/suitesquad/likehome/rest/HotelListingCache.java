@@ -0,0 +1,170 @@
+package org.suitesquad.likehome.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.lang.NonNull;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+import org.suitesquad.likehome.service.CatalogVersionService;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.zip.Deflater;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Caches the serialized, gzipped responses of {@link PublicController#getAllHotels}, keyed by the normalized
+ * query parameters and the catalog version, so a repeated listing costs neither queries nor serialization.
+ * Entries of older catalog versions are never hit again and age out. Entries also expire after
+ * likehome.cache.expire-after-write like the other caches, since catalog versions only change on writes made by
+ * this instance unless change streams are enabled.
+ * <p>
+ * As an interceptor (registered in {@link org.suitesquad.likehome.HttpCacheConfiguration}) it writes hits
+ * straight to the response, gzipped unless the client doesn't accept gzip. As a {@link ResponseBodyAdvice} it
+ * serializes and stores the body of misses. Requests filtering by availability are not cached, since bookings
+ * don't change the catalog version.
+ * <p>
+ * Payloads are kept as heap byte arrays in a Caffeine cache bounded by their total size: gzipped listings are
+ * small, the servlet output stream copies them into Tomcat's buffers either way, and the cache gets eviction and
+ * metrics (cache.* with cache=hotelListings) for free.
+ */
+@ControllerAdvice(assignableTypes = PublicController.class)
+public class HotelListingCache implements HandlerInterceptor, ResponseBodyAdvice<Object> {
+    private static final String KEY_ATTRIBUTE = HotelListingCache.class.getName() + ".key";
+
+    private final CatalogVersionService versions;
+    private final ObjectMapper objectMapper;
+    private final Cache<String, byte[]> cache;
+
+    public HotelListingCache(CatalogVersionService versions, ObjectMapper objectMapper, MeterRegistry registry,
+                             @Value("${likehome.response-cache.max-bytes}") long maxBytes,
+                             @Value("${likehome.cache.expire-after-write}") Duration expireAfterWrite) {
+        this.versions = versions;
+        this.objectMapper = objectMapper;
+        this.cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .expireAfterWrite(expireAfterWrite)
+                .<String, byte[]>weigher((key, gzipped) -> key.length() + gzipped.length)
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(registry, cache, "hotelListings");
+    }
+
+    @Override
+    public boolean preHandle(@NonNull HttpServletRequest request, @NonNull HttpServletResponse response,
+                             @NonNull Object handler) throws IOException {
+        if (!(handler instanceof HandlerMethod method) || method.getBeanType() != PublicController.class ||
+            !method.getMethod().getName().equals("getAllHotels") || !"GET".equals(request.getMethod())) {
+            return true;
+        }
+        String key = key(request);
+        if (key == null) {
+            return true;
+        }
+        byte[] gzipped = cache.getIfPresent(key);
+        if (gzipped == null) {
+            request.setAttribute(KEY_ATTRIBUTE, key);
+            return true;
+        }
+
+        response.setContentType(MediaType.APPLICATION_JSON_VALUE);
+        response.addHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+        if (acceptsGzip(request)) {
+            response.setHeader(HttpHeaders.CONTENT_ENCODING, "gzip");
+            response.setContentLength(gzipped.length);
+            response.getOutputStream().write(gzipped);
+        } else {
+            try (var json = new GZIPInputStream(new ByteArrayInputStream(gzipped))) {
+                json.transferTo(response.getOutputStream());
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public boolean supports(@NonNull MethodParameter returnType,
+                            @NonNull Class<? extends HttpMessageConverter<?>> converterType) {
+        return returnType.getMethod() != null && returnType.getMethod().getName().equals("getAllHotels");
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, @NonNull MethodParameter returnType,
+                                  @NonNull MediaType selectedContentType,
+                                  @NonNull Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  @NonNull ServerHttpRequest request, @NonNull ServerHttpResponse response) {
+        if (body != null && request instanceof ServletServerHttpRequest servletRequest &&
+            servletRequest.getServletRequest().getAttribute(KEY_ATTRIBUTE) instanceof String key) {
+            cache.put(key, gzip(body));
+        }
+        return body;
+    }
+
+    /**
+     * The cache key of a listing request, or null if it shouldn't be cached.
+     */
+    private String key(HttpServletRequest request) {
+        if (request.getParameter("checkIn") != null || request.getParameter("checkOut") != null ||
+            !isZero(request.getParameter("guests"))) {
+            return null;
+        }
+        double minRating;
+        try {
+            minRating = request.getParameter("minRating") == null ? 0
+                    : Math.max(0, Double.parseDouble(request.getParameter("minRating")));
+        } catch (NumberFormatException e) {
+            return null; // rejected by the controller
+        }
+        return String.join("\n",
+                versions.catalogVersion(),
+                "rating".equalsIgnoreCase(request.getParameter("sort")) ? "rating" : "id",
+                lowerCase(request.getParameter("location")),
+                lowerCase(request.getParameter("name")),
+                Double.toString(minRating),
+                Objects.toString(request.getParameter("limit"), ""),
+                Objects.toString(request.getParameter("after"), ""));
+    }
+
+    private static boolean isZero(String guests) {
+        return guests == null || guests.isBlank() || guests.trim().equals("0");
+    }
+
+    private static String lowerCase(String filter) { // filters are case-insensitive
+        return filter == null || filter.isBlank() ? "" : filter.toLowerCase(Locale.ROOT);
+    }
+
+    private static boolean acceptsGzip(HttpServletRequest request) {
+        String acceptEncoding = request.getHeader(HttpHeaders.ACCEPT_ENCODING);
+        return acceptEncoding != null && acceptEncoding.toLowerCase(Locale.ROOT).contains("gzip");
+    }
+
+    private byte[] gzip(Object body) {
+        var bytes = new ByteArrayOutputStream();
+        try (var gzip = new GZIPOutputStream(bytes) {{ def.setLevel(Deflater.BEST_COMPRESSION); }}) {
+            objectMapper.writeValue(gzip, body);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return bytes.toByteArray();
+    }
+}
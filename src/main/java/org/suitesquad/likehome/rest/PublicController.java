@@ -2,15 +2,27 @@ package org.suitesquad.likehome.rest;
 
 import com.fasterxml.jackson.databind.ObjectMapper;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletResponse;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.Metrics;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.MediaType;
 import org.springframework.web.bind.annotation.*;
 import org.suitesquad.likehome.model.Hotel;
+import org.suitesquad.likehome.model.Review;
 import org.suitesquad.likehome.model.Room;
-import org.suitesquad.likehome.model.User;
 import org.suitesquad.likehome.rest.RestTypes.HotelInfo;
+import org.suitesquad.likehome.rest.RestTypes.HotelSuggestion;
+import org.suitesquad.likehome.rest.RestTypes.NearbyHotelInfo;
 import org.suitesquad.likehome.rest.RestTypes.ReviewInfo;
+import org.suitesquad.likehome.rest.RestTypes.ReviewSummary;
+import org.suitesquad.likehome.service.AvailabilityService;
+import org.suitesquad.likehome.service.HotelSearchIndex;
 import org.suitesquad.likehome.service.HotelService;
 import org.suitesquad.likehome.service.ReviewService;
+import org.suitesquad.likehome.service.RoomIndex;
 import org.suitesquad.likehome.service.RoomService;
 import org.suitesquad.likehome.service.UserService;
 
@@ -19,13 +31,18 @@ import java.net.URI;
 import java.net.http.HttpClient;
 import java.net.http.HttpRequest;
 import java.net.http.HttpResponse;
-import java.util.Comparator;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.Date;
 import java.util.List;
-import java.util.function.Predicate;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.stream.IntStream;
 import java.util.stream.Stream;
 
-import static org.apache.commons.lang3.StringUtils.containsIgnoreCase;
-import static org.apache.commons.lang3.StringUtils.isBlank;
 
 /**
  * This class handles all requests not requiring authentication.
@@ -34,11 +51,24 @@ import static org.apache.commons.lang3.StringUtils.isBlank;
 @RequestMapping
 @Tag(name = "Public", description = "No Authentication Required.")
 public class PublicController {
+    /**
+     * Hotels filtered by availability are only known to match after fetching them, so up to this many pages of
+     * hotels are fetched to fill a page of them.
+     */
+    static final int MAX_SCANNED_PAGES = 4;
+    /**
+     * Holds the ID of the last hotel scanned when a page of hotels filtered by availability is cut short by
+     * {@link #MAX_SCANNED_PAGES}.
+     */
+    public static final String NEXT_AFTER = "Next-After";
 
     @Autowired private HotelService hotelService;
     @Autowired private RoomService roomService;
     @Autowired private ReviewService reviewService;
     @Autowired private UserService userService;
+    @Autowired private AvailabilityService availabilityService;
+    @Autowired private HotelSearchIndex hotelSearchIndex;
+    @Autowired private RoomIndex roomIndex;
 
     @GetMapping("/ping")
     public String ping() {
@@ -67,58 +97,153 @@ public class PublicController {
     public record TokenRequest(String firebaseApiKey, String email, String password) {}
 
     /**
-     * Retrieve a list of all hotels with optional filters. All filters are case-insensitive.
+     * Retrieve a page of hotels with optional filters. All filters are case-insensitive.
+     * To fetch the next page, pass the ID of the last hotel received as {@code after}, or the
+     * {@value #NEXT_AFTER} response header if present.
      *
-     * @param sort      Sort by rating if "rating" is passed
+     * @param sort      Sort by rating if "rating" is passed, otherwise by ID
      * @param location  city, state, or country contains
      * @param name      hotel name contains
      * @param minRating minimum rating
+     * @param limit     maximum number of hotels to return (50 if omitted, at most 500).
+     *                  When filtering by dates or guests, pages stop short after scanning 4 times as many hotels.
+     * @param after     ID of the last hotel of the previous page
+     * @param checkIn   only hotels with a room available from this date (yyyy-MM-dd), requires checkOut
+     * @param checkOut  only hotels with a room available until this date (yyyy-MM-dd), requires checkIn
+     * @param guests    only hotels with a room for at least this many guests
      */
-    @GetMapping("/hotels")
+    @GetMapping(path = "/hotels", produces = MediaType.APPLICATION_JSON_VALUE)
     public List<HotelInfo> getAllHotels(@RequestParam(required = false) String sort,
                                         @RequestParam(required = false) String location,
                                         @RequestParam(required = false) String name,
-                                        @RequestParam(defaultValue = "0") Double minRating) {
-        var hotels = hotelService.findAll().stream();
+                                        @RequestParam(defaultValue = "0") Double minRating,
+                                        @RequestParam(defaultValue = "50") Integer limit,
+                                        @RequestParam(required = false) String after,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate checkIn,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate checkOut,
+                                        @RequestParam(defaultValue = "0") Integer guests,
+                                        HttpServletResponse response) {
+        validateStay(checkIn, checkOut);
+        boolean sortByRating = "rating".equalsIgnoreCase(sort);
+        if (checkIn == null && guests <= 0) {
+            return toHotelInfos(hotelService.search(location, name, minRating, sortByRating, after, limit));
+        }
 
-        if ("rating".equalsIgnoreCase(sort)) {
-            hotels = hotels.sorted(Comparator.comparingDouble(Hotel::getRating).reversed());
+        Hotel cursor = after == null ? null : hotelService.findById(after)
+                .orElseThrow(() -> new IllegalArgumentException("Hotel '" + after + "' not found"));
+        var hotels = new ArrayList<Hotel>();
+        for (int page = 0; hotels.size() < limit; page++) {
+            if (page == MAX_SCANNED_PAGES) {
+                response.setHeader(NEXT_AFTER, cursor.getId());
+                break;
+            }
+            List<Hotel> scanned = hotelService.search(location, name, minRating, sortByRating, cursor, limit);
+            Set<String> available = availabilityService.findHotelsWithAvailableRooms(
+                    scanned.stream().map(Hotel::getId).toList(), toDate(checkIn), toDate(checkOut), guests);
+            scanned.stream()
+                    .filter(hotel -> available.contains(hotel.getId()))
+                    .limit(limit - hotels.size())
+                    .forEach(hotels::add);
+            if (scanned.size() < limit) { // the last page
+                break;
+            }
+            cursor = scanned.getLast();
         }
-        return hotels
-                .filter(isBlank(location) ? noFilter()
-                        : hotel -> containsIgnoreCase(hotel.getLocation().getCity(), location)
-                                   || containsIgnoreCase(hotel.getLocation().getState(), location)
-                                   || containsIgnoreCase(hotel.getLocation().getCountry(), location))
-                .filter(isBlank(name) ? noFilter()
-                        : hotel -> containsIgnoreCase(hotel.getName(), name))
-                .filter(hotel -> hotel.getRating() >= minRating)
-                .map(hotel -> new HotelInfo(
-                        hotel.getId(),
-                        hotel.getName(),
-                        hotel.getDescription(),
-                        hotel.getRating(),
-                        reviewService.findByHotelId(hotel.getId()).size(),
-                        hotel.getLocation().getCity(),
-                        hotel.getImageUrls(),
-                        roomService.findByHotelId(hotel.getId()).stream().map(Room::getId).toList()
-                )).toList();
+        return toHotelInfos(hotels);
+    }
+
+    /**
+     * Retrieve the hotels within a radius of a point, nearest first, with optional filters.
+     *
+     * @param lat       latitude of the point
+     * @param lng       longitude of the point
+     * @param radiusKm  maximum distance from the point in kilometers
+     * @param minRating minimum rating
+     * @param limit     maximum number of hotels to return (50 if omitted, at most 500).
+     *                  When filtering by dates or guests, only the 4 times as many nearest hotels are scanned.
+     * @param checkIn   only hotels with a room available from this date (yyyy-MM-dd), requires checkOut
+     * @param checkOut  only hotels with a room available until this date (yyyy-MM-dd), requires checkIn
+     * @param guests    only hotels with a room for at least this many guests
+     */
+    @GetMapping(path = "/hotels/near", produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<NearbyHotelInfo> getHotelsNear(@RequestParam double lat,
+                                               @RequestParam double lng,
+                                               @RequestParam(defaultValue = "10") double radiusKm,
+                                               @RequestParam(defaultValue = "0") Double minRating,
+                                               @RequestParam(defaultValue = "50") Integer limit,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate checkIn,
+                                               @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate checkOut,
+                                               @RequestParam(defaultValue = "0") Integer guests) {
+        validateStay(checkIn, checkOut);
+        List<GeoResult<Hotel>> results;
+        if (checkIn == null && guests <= 0) {
+            results = hotelService.findNear(lat, lng, radiusKm, minRating, 0, limit);
+        } else {
+            results = new ArrayList<>();
+            for (int page = 0; page < MAX_SCANNED_PAGES && results.size() < limit; page++) {
+                List<GeoResult<Hotel>> scanned = hotelService.findNear(lat, lng, radiusKm, minRating,
+                        page * limit, limit);
+                Set<String> available = availabilityService.findHotelsWithAvailableRooms(
+                        scanned.stream().map(result -> result.getContent().getId()).toList(),
+                        toDate(checkIn), toDate(checkOut), guests);
+                scanned.stream()
+                        .filter(result -> available.contains(result.getContent().getId()))
+                        .limit(limit - results.size())
+                        .forEach(results::add);
+                if (scanned.size() < limit) { // the last page
+                    break;
+                }
+            }
+        }
+        List<HotelInfo> hotels = toHotelInfos(results.stream().map(GeoResult::getContent).toList());
+        return IntStream.range(0, results.size())
+                .mapToObj(i -> new NearbyHotelInfo(hotels.get(i),
+                        results.get(i).getDistance().in(Metrics.KILOMETERS).getValue()))
+                .toList();
+    }
+
+    /**
+     * Suggest hotels for partially typed text, for autocomplete. Matches hotel names, cities, states and
+     * countries, best matches first, tolerating small typos. Hotels changed by other instances may only be
+     * suggested once this instance reloads its index, unless change streams are enabled.
+     *
+     * @param q     the text typed so far
+     * @param limit maximum number of suggestions (10 if omitted, at most 50)
+     */
+    @GetMapping(path = "/hotels/suggest", produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<HotelSuggestion> suggestHotels(@RequestParam String q,
+                                               @RequestParam(defaultValue = "10") Integer limit) {
+        return hotelSearchIndex.suggest(q, limit).stream()
+                .map(suggestion -> {
+                    Hotel hotel = suggestion.hotel();
+                    Hotel.Location location = hotel.getLocation() != null ? hotel.getLocation() : new Hotel.Location();
+                    return new HotelSuggestion(hotel.getId(), hotel.getName(),
+                            location.getCity(), location.getState(), location.getCountry());
+                })
+                .toList();
     }
 
-    @GetMapping("/hotels/{hotelId}")
+    @GetMapping(path = "/hotels/{hotelId}", produces = MediaType.APPLICATION_JSON_VALUE)
     public HotelInfo getHotelById(@PathVariable String hotelId) {
         Hotel hotel = hotelService.findById(hotelId)
                 .orElseThrow(() -> new RuntimeException("Hotel '" + hotelId + "' not found"));
 
-        var roomIds = roomService.findByHotelId(hotel.getId()).stream().map(Room::getId).toList();
-        return new HotelInfo(
-                hotel.getId(),
-                hotel.getName(),
-                hotel.getDescription(),
-                hotel.getRating(),
-                reviewService.findByHotelId(hotel.getId()).size(),
-                hotel.getLocation().getCity(),
-                hotel.getImageUrls(),
-                roomIds);
+        return toHotelInfos(List.of(hotel)).getFirst();
+    }
+
+    /**
+     * Builds the {@link HotelInfo}s for a list of hotels.
+     * Room IDs are fetched for all hotels at once, so this costs one query regardless of size.
+     */
+    private List<HotelInfo> toHotelInfos(List<Hotel> hotels) {
+        if (hotels.isEmpty()) {
+            return List.of();
+        }
+        Map<String, List<String>> roomIds = roomService.findIdsByHotelIds(hotels.stream().map(Hotel::getId).toList());
+
+        return hotels.stream()
+                .map(hotel -> HotelInfo.of(hotel, roomIds.getOrDefault(hotel.getId(), List.of())))
+                .toList();
     }
 
     /**
@@ -133,8 +258,10 @@ public class PublicController {
      * @param minBedrooms minimum number of bedrooms
      * @param minPrice    minimum price per night
      * @param maxPrice    maximum price per night
+     * @param checkIn     only rooms available from this date (yyyy-MM-dd), requires checkOut
+     * @param checkOut    only rooms available until this date (yyyy-MM-dd), requires checkIn
      */
-    @GetMapping("/hotels/{hotelId}/rooms")
+    @GetMapping(path = "/hotels/{hotelId}/rooms", produces = MediaType.APPLICATION_JSON_VALUE)
     public List<Room> getHotelRooms(@PathVariable String hotelId,
                                         @RequestParam(required = false) String sort,
                                         @RequestParam(required = false) String name,
@@ -143,53 +270,143 @@ public class PublicController {
                                         @RequestParam(defaultValue = "0") Integer minGuests,
                                         @RequestParam(defaultValue = "0") Integer minBedrooms,
                                         @RequestParam(defaultValue = "0") Double minPrice,
-                                        @RequestParam(required = false) Double maxPrice) {
-        hotelService.findById(hotelId)
-                .orElseThrow(() -> new RuntimeException("Hotel '" + hotelId + "' not found"));
+                                        @RequestParam(required = false) Double maxPrice,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate checkIn,
+                                        @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate checkOut) {
+        validateStay(checkIn, checkOut);
+        if (!hotelService.existsById(hotelId)) {
+            throw new RuntimeException("Hotel '" + hotelId + "' not found");
+        }
+
+        Stream<Room> rooms = roomIndex.stream(hotelId,
+                roomFilter(name, minBaths, minBeds, minGuests, minBedrooms, minPrice, maxPrice),
+                "price".equalsIgnoreCase(sort));
+        return checkIn == null ? rooms.toList() : rooms
+                .filter(room -> availabilityService.isAvailable(room, toDate(checkIn), toDate(checkOut)))
+                .toList();
+    }
 
-        Stream<Room> rooms = roomService.findByHotelId(hotelId).stream();
+    /**
+     * Search the rooms of all hotels with optional filters. All filters are case-insensitive.
+     *
+     * @param sort        Sort by price if "price" is passed
+     * @param name        room name contains
+     * @param minBaths    minimum number of baths
+     * @param minBeds     minimum number of beds
+     * @param minGuests   minimum number of guests
+     * @param minBedrooms minimum number of bedrooms
+     * @param minPrice    minimum price per night
+     * @param maxPrice    maximum price per night
+     * @param limit       maximum number of rooms to return (50 if omitted, at most 500)
+     * @param checkIn     only rooms available from this date (yyyy-MM-dd), requires checkOut
+     * @param checkOut    only rooms available until this date (yyyy-MM-dd), requires checkIn
+     */
+    @GetMapping(path = "/rooms", produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<Room> searchRooms(@RequestParam(required = false) String sort,
+                                  @RequestParam(required = false) String name,
+                                  @RequestParam(defaultValue = "0") Integer minBaths,
+                                  @RequestParam(defaultValue = "0") Integer minBeds,
+                                  @RequestParam(defaultValue = "0") Integer minGuests,
+                                  @RequestParam(defaultValue = "0") Integer minBedrooms,
+                                  @RequestParam(defaultValue = "0") Double minPrice,
+                                  @RequestParam(required = false) Double maxPrice,
+                                  @RequestParam(defaultValue = "50") Integer limit,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate checkIn,
+                                  @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate checkOut) {
+        validateStay(checkIn, checkOut);
+        HotelService.checkPageSize(limit);
+        Stream<Room> rooms = roomIndex.stream(null,
+                roomFilter(name, minBaths, minBeds, minGuests, minBedrooms, minPrice, maxPrice),
+                "price".equalsIgnoreCase(sort));
+        if (checkIn != null) {
+            rooms = rooms.filter(room -> availabilityService.isAvailable(room, toDate(checkIn), toDate(checkOut)));
+        }
+        return rooms.limit(limit).toList();
+    }
+
+    static RoomIndex.Filter roomFilter(String name, int minBaths, int minBeds, int minGuests,
+                                               int minBedrooms, double minPrice, Double maxPrice) {
+        return new RoomIndex.Filter(name, minBaths, minBeds, minGuests, minBedrooms, minPrice,
+                maxPrice == null ? Double.POSITIVE_INFINITY : maxPrice);
+    }
 
-        if ("price".equalsIgnoreCase(sort)) {
-            rooms = rooms.sorted(Comparator.comparingDouble(Room::getPricePerNight));
+    static void validateStay(LocalDate checkIn, LocalDate checkOut) {
+        if ((checkIn == null) != (checkOut == null)) {
+            throw new IllegalArgumentException("Check-in and check-out dates must be passed together");
+        }
+        if (checkIn != null && !checkIn.isBefore(checkOut)) {
+            throw new IllegalArgumentException("Check-in date must be before check-out date");
+        }
+        if (checkIn != null && ChronoUnit.DAYS.between(checkIn, checkOut) > AvailabilityService.MAX_STAY_NIGHTS) {
+            throw new IllegalArgumentException("Stays are at most " + AvailabilityService.MAX_STAY_NIGHTS + " nights");
         }
-        return rooms
-                .filter(isBlank(name) ? noFilter()
-                        : room -> containsIgnoreCase(room.getName(), name))
-                .filter(room -> room.getBaths() >= minBaths)
-                .filter(room -> room.getBeds() >= minBeds)
-                .filter(room -> room.getGuests() >= minGuests)
-                .filter(room -> room.getBedrooms() >= minBedrooms)
-                .filter(room -> room.getPricePerNight() >= minPrice)
-                .filter(maxPrice == null ? noFilter()
-                        : room -> room.getPricePerNight() <= maxPrice)
-                .toList();
     }
 
-    private static <T> Predicate<T> noFilter() { // for when no filter is applied
-        return t -> true;
+    static Date toDate(LocalDate date) { // reservation nights are UTC days
+        return date == null ? null : Date.from(date.atStartOfDay(ZoneOffset.UTC).toInstant());
     }
 
     @GetMapping("/hotels/{hotelId}/rooms/{roomId}")
     public Room getHotelRoomById(@PathVariable String hotelId, @PathVariable String roomId) {
-        hotelService.findById(hotelId)
-                .orElseThrow(() -> new RuntimeException("Hotel '" + hotelId + "' not found"));
+        if (!hotelService.existsById(hotelId)) {
+            throw new RuntimeException("Hotel '" + hotelId + "' not found");
+        }
 
         return roomService.findById(roomId)
                 .orElseThrow(() -> new RuntimeException("Room '" + roomId + "' not found"));
     }
 
-    @GetMapping("/hotels/{hotelId}/reviews")
-    public List<ReviewInfo> getReviewsByHotelId(@PathVariable String hotelId) {
-        hotelService.findById(hotelId)
-                .orElseThrow(() -> new RuntimeException("Hotel '" + hotelId + "' not found"));
+    /**
+     * Retrieve a page of a hotel's reviews, newest first.
+     * To fetch the next page, pass the ID of the last review received as {@code after}.
+     *
+     * @param sort  Sort by rating (highest first) if "rating" is passed, otherwise by date
+     * @param limit maximum number of reviews to return (50 if omitted, at most 500)
+     * @param after ID of the last review of the previous page
+     */
+    @GetMapping(path = "/hotels/{hotelId}/reviews", produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<ReviewInfo> getReviewsByHotelId(@PathVariable String hotelId,
+                                                @RequestParam(required = false) String sort,
+                                                @RequestParam(defaultValue = "50") Integer limit,
+                                                @RequestParam(required = false) String after) {
+        if (!hotelService.existsById(hotelId)) {
+            throw new RuntimeException("Hotel '" + hotelId + "' not found");
+        }
 
-        return reviewService.findByHotelId(hotelId).stream()
+        List<Review> reviews = reviewService.findPage(hotelId, "rating".equalsIgnoreCase(sort), after, limit);
+        Map<String, String> firstNames = userService.findFirstNames(reviews.stream().map(Review::getUserId).toList());
+        return reviews.stream()
                 .map(review -> new ReviewInfo(
                         review.getId(),
-                        userService.findById(review.getUserId()).map(User::getFirstName).orElse("Unknown User"),
+                        firstNames.getOrDefault(review.getUserId(), "Unknown User"),
                         review.getContents(),
                         review.getRating(),
                         review.getReviewDate()
                 )).toList();
     }
+
+    /**
+     * Get the number of reviews, average rating and rating histogram of a hotel.
+     */
+    @GetMapping("/hotels/{hotelId}/reviews/summary")
+    public ReviewSummary getReviewSummary(@PathVariable String hotelId) {
+        if (!hotelService.existsById(hotelId)) {
+            throw new RuntimeException("Hotel '" + hotelId + "' not found");
+        }
+
+        var histogram = new TreeMap<Integer, Integer>();
+        for (int stars = 1; stars <= 5; stars++) {
+            histogram.put(stars, 0);
+        }
+        return reviewService.findStatsByHotelId(hotelId)
+                .map(stats -> {
+                    if (stats.getHistogram() != null) {
+                        stats.getHistogram().forEach((stars, count) -> histogram.put(Integer.valueOf(stars), count));
+                    }
+                    return new ReviewSummary(stats.getCount(),
+                            stats.getCount() == 0 ? 0 : stats.getRatingSum() / stats.getCount(),
+                            histogram);
+                })
+                .orElse(new ReviewSummary(0, 0, histogram));
+    }
 }
\ No newline at end of file
@@ -0,0 +1,125 @@
+package org.suitesquad.likehome.rest;
+
+import io.swagger.v3.oas.annotations.tags.Tag;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.format.annotation.DateTimeFormat.ISO;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.*;
+import org.suitesquad.likehome.model.Hotel;
+import org.suitesquad.likehome.model.Review;
+import org.suitesquad.likehome.model.Room;
+import org.suitesquad.likehome.rest.RestTypes.HotelInfo;
+import org.suitesquad.likehome.rest.RestTypes.ReviewInfo;
+import org.suitesquad.likehome.service.AvailabilityService;
+import org.suitesquad.likehome.service.ReactiveCatalogService;
+import org.suitesquad.likehome.service.RoomIndex;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.LocalDate;
+import java.util.List;
+
+import static org.suitesquad.likehome.rest.PublicController.roomFilter;
+import static org.suitesquad.likehome.rest.PublicController.toDate;
+import static org.suitesquad.likehome.rest.PublicController.validateStay;
+
+/**
+ * Streaming variants of the public read endpoints, selected with {@code Accept: application/x-ndjson}.
+ * Results are written one JSON object per line as they are read from the database, without blocking a thread
+ * or holding the whole result in memory. Rooms are read from the {@link RoomIndex}, as in {@link PublicController},
+ * whose parameters are the same.
+ */
+@RestController
+@RequestMapping
+@Tag(name = "Public", description = "No Authentication Required.")
+public class ReactivePublicController {
+
+    /**
+     * Number of hotels or reviews whose related data is fetched with one query.
+     */
+    private static final int BATCH_SIZE = 100;
+
+    @Autowired private ReactiveCatalogService catalogService;
+    @Autowired private AvailabilityService availabilityService;
+    @Autowired private RoomIndex roomIndex;
+
+    /**
+     * Stream hotels with optional filters. Availability filters (checkIn, checkOut, guests) are only supported
+     * by the non-streaming endpoint.
+     */
+    @GetMapping(path = "/hotels", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<HotelInfo> streamHotels(@RequestParam(required = false) String sort,
+                                        @RequestParam(required = false) String location,
+                                        @RequestParam(required = false) String name,
+                                        @RequestParam(defaultValue = "0") Double minRating,
+                                        @RequestParam(defaultValue = "50") Integer limit,
+                                        @RequestParam(required = false) String after,
+                                        @RequestParam(required = false) String checkIn,
+                                        @RequestParam(required = false) String checkOut,
+                                        @RequestParam(required = false) String guests) {
+        if (checkIn != null || checkOut != null || guests != null) {
+            throw new IllegalArgumentException("Filtering by checkIn, checkOut or guests requires Accept: "
+                    + MediaType.APPLICATION_JSON_VALUE);
+        }
+        return toHotelInfos(catalogService.searchHotels(location, name, minRating, "rating".equalsIgnoreCase(sort),
+                after, limit));
+    }
+
+    @GetMapping(path = "/hotels/{hotelId}", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Mono<HotelInfo> streamHotelById(@PathVariable String hotelId) {
+        return toHotelInfos(catalogService.findHotel(hotelId).flux()).single();
+    }
+
+    @GetMapping(path = "/hotels/{hotelId}/rooms", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<Room> streamHotelRooms(@PathVariable String hotelId,
+                                       @RequestParam(required = false) String sort,
+                                       @RequestParam(required = false) String name,
+                                       @RequestParam(defaultValue = "0") Integer minBaths,
+                                       @RequestParam(defaultValue = "0") Integer minBeds,
+                                       @RequestParam(defaultValue = "0") Integer minGuests,
+                                       @RequestParam(defaultValue = "0") Integer minBedrooms,
+                                       @RequestParam(defaultValue = "0") Double minPrice,
+                                       @RequestParam(required = false) Double maxPrice,
+                                       @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate checkIn,
+                                       @RequestParam(required = false) @DateTimeFormat(iso = ISO.DATE) LocalDate checkOut) {
+        validateStay(checkIn, checkOut);
+        RoomIndex.Filter filter = roomFilter(name, minBaths, minBeds, minGuests, minBedrooms, minPrice, maxPrice);
+        Flux<Room> rooms = catalogService.checkHotelExists(hotelId)
+                .thenMany(Flux.defer(() -> Flux.fromStream(
+                        roomIndex.stream(hotelId, filter, "price".equalsIgnoreCase(sort)))));
+        return checkIn == null ? rooms
+                : rooms.filter(room -> availabilityService.isAvailable(room, toDate(checkIn), toDate(checkOut)));
+    }
+
+    @GetMapping(path = "/hotels/{hotelId}/reviews", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public Flux<ReviewInfo> streamReviewsByHotelId(@PathVariable String hotelId,
+                                                   @RequestParam(required = false) String sort,
+                                                   @RequestParam(defaultValue = "50") Integer limit,
+                                                   @RequestParam(required = false) String after) {
+        return catalogService.checkHotelExists(hotelId)
+                .thenMany(catalogService.findReviews(hotelId, "rating".equalsIgnoreCase(sort), after, limit))
+                .buffer(BATCH_SIZE)
+                .concatMap(reviews -> catalogService.findFirstNames(reviews.stream().map(Review::getUserId).toList())
+                        .flatMapIterable(firstNames -> reviews.stream()
+                                .map(review -> new ReviewInfo(
+                                        review.getId(),
+                                        firstNames.getOrDefault(review.getUserId(), "Unknown User"),
+                                        review.getContents(),
+                                        review.getRating(),
+                                        review.getReviewDate()))
+                                .toList()));
+    }
+
+    /**
+     * Builds the {@link HotelInfo}s in batches, with one query per batch for the room IDs.
+     */
+    private Flux<HotelInfo> toHotelInfos(Flux<Hotel> hotels) {
+        return hotels.buffer(BATCH_SIZE)
+                .concatMap(batch -> catalogService.findRoomIdsByHotelIds(batch.stream().map(Hotel::getId).toList())
+                        .flatMapIterable(roomIds -> batch.stream()
+                                .map(hotel -> HotelInfo.of(hotel,
+                                        List.copyOf(roomIds.getOrDefault(hotel.getId(), List.of()))))
+                                .toList()));
+    }
+}
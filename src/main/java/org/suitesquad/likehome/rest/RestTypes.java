@@ -1,9 +1,11 @@
 package org.suitesquad.likehome.rest;
 
+import org.suitesquad.likehome.model.Hotel;
 import org.suitesquad.likehome.model.Reservation;
 
 import java.util.Date;
 import java.util.List;
+import java.util.Map;
 
 /**
  * This class contains the response types for the REST API.
@@ -13,7 +15,19 @@ public class RestTypes {
     public record SignUpInfo(String email, String firstName, String lastName) {}
 
     public record HotelInfo(String id, String name, String description, double rating,
-                            int numberOfReviews, String city, List<String> imageUrls, List<String> roomsIds) {}
+                            int numberOfReviews, String city, List<String> imageUrls, List<String> roomsIds) {
+        public static HotelInfo of(Hotel hotel, List<String> roomsIds) {
+            return new HotelInfo(
+                    hotel.getId(),
+                    hotel.getName(),
+                    hotel.getDescription(),
+                    hotel.getRating(),
+                    hotel.getReviewCount(),
+                    hotel.getLocation().getCity(),
+                    hotel.getImageUrls(),
+                    roomsIds);
+        }
+    }
 
     // just using model.Room in API to avoid duplicating the fields
 
@@ -30,6 +44,17 @@ public class RestTypes {
 
     public record ReviewInfo(String id, String firstName, String contents, double rating, Date reviewDate) {}
 
+    /**
+     * @param histogram number of reviews per rating rounded to a whole star (1 to 5)
+     */
+    public record ReviewSummary(int numberOfReviews, double averageRating, Map<Integer, Integer> histogram) {}
+
+    public record NearbyHotelInfo(HotelInfo hotel, double distanceKm) {}
+
+    public record HotelSuggestion(String id, String name, String city, String state, String country) {}
+
+    public record CacheStatsInfo(long size, long hits, long misses, long evictions, double hitRate) {}
+
     public record ChatMessage(Sender sender, String content) {
         enum Sender {
             USER, ASSISTANT
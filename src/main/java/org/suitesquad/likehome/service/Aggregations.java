@@ -0,0 +1,31 @@
+package org.suitesquad.likehome.service;
+
+import org.bson.Document;
+import org.springframework.data.mongodb.core.aggregation.AggregationOperation;
+
+import java.util.List;
+
+/**
+ * Aggregation stages and expressions written as plain documents, for what Spring Data has no builder for.
+ */
+final class Aggregations {
+    private static final long DAY_MS = 86_400_000L;
+
+    private Aggregations() {}
+
+    static AggregationOperation stage(String operator, Object value) {
+        return context -> new Document(operator, value);
+    }
+
+    /**
+     * The UTC epoch day of a date field, as an int so $range accepts it.
+     */
+    static Document night(String field) {
+        return new Document("$toInt", new Document("$floor",
+                new Document("$divide", List.of(new Document("$toLong", field), DAY_MS))));
+    }
+
+    static Document sumIf(Document condition, Object then, Object otherwise) {
+        return new Document("$sum", new Document("$cond", List.of(condition, then, otherwise)));
+    }
+}
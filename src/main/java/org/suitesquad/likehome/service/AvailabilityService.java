@@ -0,0 +1,378 @@
+package org.suitesquad.likehome.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.suitesquad.likehome.model.Reservation;
+import org.suitesquad.likehome.model.Room;
+import org.suitesquad.likehome.model.RoomNight;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Tracks the booked nights of every room.
+ * <p>
+ * A room can be booked {@link Room#getAvailability()} times per night (rooms without an availability are a single
+ * unit). Bookings are counted per room and night in the room_nights collection, which is the source of truth:
+ * a night is only booked by a conditional increment of its counter, so concurrent bookings cannot oversell a room.
+ * <p>
+ * The same counts are mirrored in memory so that availability searches never touch the database.
+ * The mirror is loaded from the active reservations at startup and must be updated through
+ * {@link #reserve}, {@link #reserveAll}, {@link #reserveMove}, {@link #releaseExcept}, {@link #release} and
+ * {@link #releaseAll} whenever a reservation is created, changed or cancelled.
+ * <p>
+ * The mirror is per instance: it never sees the bookings and releases made by other instances, so their searches
+ * can show a room as free after it was booked elsewhere, or as booked after it was released elsewhere. Bookings
+ * therefore only trust room_nights: a booking the mirror thinks is full is still attempted, and if it succeeds the
+ * mirror just counts one more unit than the room has.
+ */
+@Service
+public class AvailabilityService {
+    /**
+     * The longest stay that can be booked or searched for. Booking a stay costs a database round trip per night.
+     */
+    public static final int MAX_STAY_NIGHTS = 30;
+
+    @Autowired
+    private ReservationService reservationService;
+    @Autowired
+    private RoomService roomService;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    private final Map<String, RoomCalendar> calendars = new ConcurrentHashMap<>();
+
+    /**
+     * Loads the in-memory mirror from the active reservations.
+     * The room_nights collection is seeded from it if it is empty (e.g. on first deployment).
+     */
+    @PostConstruct
+    public void load() {
+        calendars.clear();
+        for (Reservation reservation : reservationService.findActive()) {
+            calendar(reservation.getRoomId())
+                    .book(firstNight(reservation.getCheckIn()), endNight(reservation.getCheckIn(), reservation.getCheckOut()));
+        }
+        if (mongoTemplate.estimatedCount(RoomNight.class) == 0) {
+            writeRoomNights();
+        }
+    }
+
+    private void writeRoomNights() {
+        var bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, RoomNight.class);
+        int[] count = {0};
+        calendars.forEach((roomId, calendar) -> calendar.forEachNight((night, bookedUnits) -> {
+            bulk.upsert(new Query(Criteria.where("_id").is(RoomNight.id(roomId, night))),
+                    new Update().set("roomId", roomId).set("night", night).set("bookedUnits", bookedUnits));
+            count[0]++;
+        }));
+        if (count[0] > 0) {
+            bulk.execute();
+        }
+    }
+
+    /**
+     * @return whether at least one unit of the room is free for every night in [checkIn, checkOut)
+     */
+    public boolean isAvailable(Room room, Date checkIn, Date checkOut) {
+        RoomCalendar calendar = calendars.get(room.getId());
+        return calendar == null
+               || calendar.isFree(firstNight(checkIn), endNight(checkIn, checkOut), capacity(room));
+    }
+
+    /**
+     * Finds the hotels that have a room for the guests with at least one unit free for every night in
+     * [checkIn, checkOut). The rooms of all hotels are fetched in a single query.
+     *
+     * @param checkIn  check-in date, or null to ignore availability
+     * @param checkOut check-out date, or null to ignore availability
+     * @param guests   minimum number of guests per room
+     */
+    public Set<String> findHotelsWithAvailableRooms(Collection<String> hotelIds, Date checkIn, Date checkOut,
+                                                    int guests) {
+        return roomService.findByHotelIds(hotelIds).stream()
+                .filter(room -> room.getGuests() >= guests)
+                .filter(room -> checkIn == null || checkOut == null || isAvailable(room, checkIn, checkOut))
+                .map(Room::getHotelId)
+                .collect(Collectors.toSet());
+    }
+
+    /**
+     * Books one unit of the room for [checkIn, checkOut).
+     *
+     * @throws IllegalArgumentException if the room is fully booked on any of those nights
+     */
+    public void reserve(Room room, Date checkIn, Date checkOut) {
+        long from = firstNight(checkIn);
+        long to = endNight(checkIn, checkOut);
+        checkStayLength(from, to);
+        if (!tryBookNights(room.getId(), from, to, capacity(room))) {
+            throw new IllegalArgumentException(notAvailable(room.getId()));
+        }
+        calendar(room.getId()).book(from, to);
+    }
+
+    /**
+     * Books one unit of the room of each reservation for its stay, as {@link #reserve} does, with the nights of all
+     * the stays booked in a single bulk write.
+     *
+     * @param rooms the rooms of the reservations by ID
+     * @return why each reservation that couldn't be booked wasn't, by its index. Nothing is booked for those.
+     */
+    public Map<Integer, String> reserveAll(List<Reservation> reservations, Map<String, Room> rooms) {
+        var errors = new HashMap<Integer, String>();
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, RoomNight.class);
+        var nights = new ArrayList<long[]>(); // the reservation index and night of each upsert
+        for (int i = 0; i < reservations.size(); i++) {
+            Reservation reservation = reservations.get(i);
+            Room room = rooms.get(reservation.getRoomId());
+            long from = firstNight(reservation.getCheckIn());
+            long to = endNight(reservation.getCheckIn(), reservation.getCheckOut());
+            if (to - from > MAX_STAY_NIGHTS) {
+                errors.put(i, "Stays are at most " + MAX_STAY_NIGHTS + " nights");
+            } else {
+                for (long night = from; night < to; night++) {
+                    bulk.upsert(bookableNight(room.getId(), night, capacity(room)), bookNight(room.getId(), night));
+                    nights.add(new long[]{i, night});
+                }
+            }
+        }
+        if (nights.isEmpty()) {
+            return errors;
+        }
+
+        var unbooked = new HashSet<Integer>();
+        try {
+            bulk.execute();
+        } catch (BulkOperationException e) {
+            // as in tryBookNight, the night is full or was created concurrently and may not be full
+            e.getErrors().forEach(error -> {
+                long[] night = nights.get(error.getIndex());
+                Room room = rooms.get(reservations.get((int) night[0]).getRoomId());
+                if (mongoTemplate.updateFirst(bookableNight(room.getId(), night[1], capacity(room)),
+                        bookNight(room.getId(), night[1]), RoomNight.class).getModifiedCount() == 0) {
+                    unbooked.add(error.getIndex());
+                }
+            });
+        }
+        unbooked.forEach(index -> {
+            int i = (int) nights.get(index)[0];
+            errors.put(i, notAvailable(reservations.get(i).getRoomId()));
+        });
+        // undo the nights that were booked for reservations with a full night
+        BulkOperations release = mongoTemplate.bulkOps(BulkMode.UNORDERED, RoomNight.class);
+        int released = 0;
+        for (int index = 0; index < nights.size(); index++) {
+            long[] night = nights.get(index);
+            if (errors.containsKey((int) night[0]) && !unbooked.contains(index)) {
+                String roomId = reservations.get((int) night[0]).getRoomId();
+                release.updateOne(new Query(Criteria.where("_id").is(RoomNight.id(roomId, night[1]))),
+                        new Update().inc("bookedUnits", -1));
+                released++;
+            }
+        }
+        if (released > 0) {
+            release.execute();
+        }
+        for (int i = 0; i < reservations.size(); i++) {
+            Reservation reservation = reservations.get(i);
+            if (!errors.containsKey(i)) {
+                calendar(reservation.getRoomId()).book(firstNight(reservation.getCheckIn()),
+                        endNight(reservation.getCheckIn(), reservation.getCheckOut()));
+            }
+        }
+        return errors;
+    }
+
+    /**
+     * First step of moving a booking of the room from [oldCheckIn, oldCheckOut) to [checkIn, checkOut): books
+     * the new nights the booking doesn't hold yet. The old nights stay booked, so nobody else can take them
+     * until the move is done with {@code releaseExcept(old dates, new dates)}, or undone with
+     * {@code releaseExcept(new dates, old dates)}.
+     *
+     * @throws IllegalArgumentException if the room is fully booked on any of the new nights.
+     *                                  Nothing is booked in that case.
+     */
+    public void reserveMove(Room room, Date oldCheckIn, Date oldCheckOut, Date checkIn, Date checkOut) {
+        long from = firstNight(checkIn);
+        long to = endNight(checkIn, checkOut);
+        checkStayLength(from, to);
+        List<long[]> added = outside(from, to, firstNight(oldCheckIn), endNight(oldCheckIn, oldCheckOut));
+
+        RoomCalendar calendar = calendar(room.getId());
+        var booked = new ArrayList<long[]>();
+        for (long[] nights : added) {
+            if (!tryBookNights(room.getId(), nights[0], nights[1], capacity(room))) {
+                booked.forEach(range -> releaseNights(room.getId(), range[0], range[1]));
+                throw new IllegalArgumentException(notAvailable(room.getId()));
+            }
+            booked.add(nights);
+        }
+        added.forEach(nights -> calendar.book(nights[0], nights[1]));
+    }
+
+    /**
+     * Releases the nights of a booking of the room for [checkIn, checkOut), except those also in
+     * [keptCheckIn, keptCheckOut). See {@link #reserveMove}.
+     */
+    public void releaseExcept(String roomId, Date checkIn, Date checkOut, Date keptCheckIn, Date keptCheckOut) {
+        for (long[] nights : outside(firstNight(checkIn), endNight(checkIn, checkOut),
+                firstNight(keptCheckIn), endNight(keptCheckIn, keptCheckOut))) {
+            releaseNights(roomId, nights[0], nights[1]);
+            calendar(roomId).release(nights[0], nights[1]);
+        }
+    }
+
+    /**
+     * Forgets the past nights of the in-memory mirror every day, since stays can only be booked from today.
+     */
+    @Scheduled(cron = "0 0 0 * * *", zone = "UTC")
+    public void dropPastNights() {
+        long today = LocalDate.now(ZoneOffset.UTC).toEpochDay();
+        calendars.values().forEach(calendar -> calendar.dropBefore(today));
+    }
+
+    /**
+     * Releases a booking of the room for [checkIn, checkOut).
+     */
+    public void release(String roomId, Date checkIn, Date checkOut) {
+        long from = firstNight(checkIn);
+        long to = endNight(checkIn, checkOut);
+        releaseNights(roomId, from, to);
+        calendar(roomId).release(from, to);
+    }
+
+    /**
+     * Releases the bookings of several reservations, as {@link #release} does, in a single bulk write.
+     */
+    public void releaseAll(Collection<Reservation> reservations) {
+        if (reservations.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, RoomNight.class);
+        for (Reservation reservation : reservations) {
+            bulk.updateMulti(new Query(Criteria.where("roomId").is(reservation.getRoomId())
+                            .and("night").gte(firstNight(reservation.getCheckIn()))
+                            .lt(endNight(reservation.getCheckIn(), reservation.getCheckOut()))),
+                    new Update().inc("bookedUnits", -1));
+        }
+        bulk.execute();
+        for (Reservation reservation : reservations) {
+            calendar(reservation.getRoomId()).release(firstNight(reservation.getCheckIn()),
+                    endNight(reservation.getCheckIn(), reservation.getCheckOut()));
+        }
+    }
+
+    /**
+     * Books the nights one by one, each with a conditional increment. Already booked nights are released again
+     * if any night is full.
+     */
+    private boolean tryBookNights(String roomId, long from, long to, int capacity) {
+        for (long night = from; night < to; night++) {
+            if (!tryBookNight(roomId, night, capacity)) {
+                releaseNights(roomId, from, night);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean tryBookNight(String roomId, long night, int capacity) {
+        Query query = bookableNight(roomId, night, capacity);
+        Update update = bookNight(roomId, night);
+        try {
+            mongoTemplate.upsert(query, update, RoomNight.class);
+            return true;
+        } catch (DuplicateKeyException e) {
+            // either the night is full, or another booking created the night concurrently and it may not be full
+            return mongoTemplate.updateFirst(query, update, RoomNight.class).getModifiedCount() > 0;
+        }
+    }
+
+    /**
+     * Matches the night unless it is full. Upserting {@link #bookNight} with it fails with a duplicate key if it is.
+     */
+    private static Query bookableNight(String roomId, long night, int capacity) {
+        return new Query(Criteria.where("_id").is(RoomNight.id(roomId, night)).and("bookedUnits").lt(capacity));
+    }
+
+    private static Update bookNight(String roomId, long night) {
+        return new Update().inc("bookedUnits", 1).setOnInsert("roomId", roomId).setOnInsert("night", night);
+    }
+
+    private static String notAvailable(String roomId) {
+        return "Room '" + roomId + "' is not available for these dates";
+    }
+
+    private void releaseNights(String roomId, long from, long to) {
+        incrementNights(roomId, from, to, -1);
+    }
+
+    private void incrementNights(String roomId, long from, long to, int units) {
+        if (from < to) {
+            mongoTemplate.updateMulti(
+                    new Query(Criteria.where("roomId").is(roomId).and("night").gte(from).lt(to)),
+                    new Update().inc("bookedUnits", units), RoomNight.class);
+        }
+    }
+
+    private RoomCalendar calendar(String roomId) {
+        return calendars.computeIfAbsent(roomId, id -> new RoomCalendar());
+    }
+
+    /**
+     * @return the nights of [from, to) outside [exceptFrom, exceptTo), as up to two [from, to) ranges
+     */
+    static List<long[]> outside(long from, long to, long exceptFrom, long exceptTo) {
+        var ranges = new ArrayList<long[]>(2);
+        if (from < Math.min(to, exceptFrom)) {
+            ranges.add(new long[]{from, Math.min(to, exceptFrom)});
+        }
+        if (Math.max(from, exceptTo) < to) {
+            ranges.add(new long[]{Math.max(from, exceptTo), to});
+        }
+        return ranges;
+    }
+
+    private static void checkStayLength(long from, long to) {
+        if (to - from > MAX_STAY_NIGHTS) {
+            throw new IllegalArgumentException("Stays are at most " + MAX_STAY_NIGHTS + " nights");
+        }
+    }
+
+    private static int capacity(Room room) {
+        return Math.max(1, room.getAvailability());
+    }
+
+    static long firstNight(Date checkIn) {
+        return checkIn.toInstant().atZone(ZoneOffset.UTC).toLocalDate().toEpochDay();
+    }
+
+    /**
+     * @return the night after the stay. A stay checking out on the check-in day still occupies one night.
+     */
+    static long endNight(Date checkIn, Date checkOut) {
+        return Math.max(firstNight(checkIn) + 1,
+                checkOut.toInstant().atZone(ZoneOffset.UTC).toLocalDate().toEpochDay());
+    }
+}
@@ -0,0 +1,538 @@
+package org.suitesquad.likehome.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import org.bson.types.ObjectId;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.BulkOperationException;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.suitesquad.likehome.model.Hotel;
+import org.suitesquad.likehome.model.Reservation;
+import org.suitesquad.likehome.model.Room;
+import org.suitesquad.likehome.model.User;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * Imports and exports the hotels, rooms and reservations collections as streams, so feeds of any size can be loaded
+ * without holding them in memory.
+ * <p>
+ * Imports read NDJSON (a JSON document per line) or CSV with a header row. CSV columns are fields: dotted names set
+ * nested fields ({@code location.city}), and names ending in {@code []} are lists separated by semicolons
+ * ({@code amenities[]}). Empty cells are left unset. Documents are validated, checked against the hotels and rooms
+ * they reference, and inserted in unordered bulk writes of batchSize documents. Invalid and duplicate documents are
+ * rejected without stopping the import.
+ * <p>
+ * At most maxInFlight batches are written at once. When that many are pending, reading waits for the oldest one,
+ * so memory stays bounded however fast the input arrives, and a slow database slows down the upload.
+ * <p>
+ * Imported hotels and rooms are announced with a {@link CatalogChangedEvent}. Imported reservations must be of
+ * existing users, and active ones book their nights like any other reservation (see
+ * {@link AvailabilityService#reserve}), so reservations for fully booked nights are rejected. The nights of a batch
+ * are booked in one bulk write and released in another for the reservations that fail to insert, including when the
+ * insert fails as a whole. Inserted reservations are added to the daily stats in one bulk write per batch.
+ * <p>
+ * Exports stream a collection from a cursor as NDJSON, which can be imported again.
+ */
+@Service
+public class BulkDataService {
+    /**
+     * At most this many rejections are reported, though all are counted.
+     */
+    static final int MAX_REPORTED_REJECTIONS = 100;
+    private static final Map<String, Class<?>> COLLECTIONS = Map.of(
+            CatalogChangedEvent.HOTELS, Hotel.class,
+            CatalogChangedEvent.ROOMS, Room.class,
+            "reservations", Reservation.class);
+    private static final CsvMapper CSV_MAPPER = new CsvMapper();
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private ObjectMapper objectMapper;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private AvailabilityService availabilityService;
+    @Autowired
+    private DailyStatsService dailyStatsService;
+    @Value("${likehome.import.batch-size}")
+    private int batchSize;
+    @Value("${likehome.import.max-in-flight}")
+    private int maxInFlight;
+
+    public enum Format {
+        NDJSON, CSV;
+
+        /**
+         * The format of a media type or file name, e.g. text/csv or hotels.ndjson.
+         */
+        public static Format of(String mediaTypeOrFileName) {
+            String name = mediaTypeOrFileName == null ? "" : mediaTypeOrFileName.toLowerCase(Locale.ROOT);
+            if (name.contains("csv")) {
+                return CSV;
+            }
+            if (name.contains("json")) { // also matches .jsonl
+                return NDJSON;
+            }
+            throw new IllegalArgumentException("Unsupported format '" + mediaTypeOrFileName + "', use NDJSON or CSV");
+        }
+    }
+
+    /**
+     * A document that was not imported.
+     *
+     * @param line the line of the input it was on
+     */
+    public record Rejection(long line, String message) {}
+
+    /**
+     * The progress of an import.
+     *
+     * @param read       the documents read
+     * @param inserted   the documents inserted
+     * @param rejected   the documents rejected
+     * @param rejections the first {@value #MAX_REPORTED_REJECTIONS} rejections
+     * @param done       whether the import is finished
+     */
+    public record Progress(String collection, long read, long inserted, long rejected, List<Rejection> rejections,
+                           boolean done) {}
+
+    /**
+     * A parsed document, or why its line couldn't be parsed.
+     */
+    record Parsed<T>(long line, T document, String error) {}
+
+    private record BatchResult(long inserted, List<Rejection> rejections) {}
+
+    /**
+     * Fails if a collection can't be imported or exported.
+     */
+    public void checkCollection(String collection) {
+        if (!COLLECTIONS.containsKey(collection)) {
+            throw new IllegalArgumentException("Unknown collection '" + collection + "', use one of "
+                                               + new TreeSet<>(COLLECTIONS.keySet()));
+        }
+    }
+
+    /**
+     * Imports documents into a collection.
+     *
+     * @param listener called with the progress after every batch
+     * @return the final progress
+     */
+    public Progress importData(String collection, Format format, InputStream in, Consumer<Progress> listener) {
+        checkCollection(collection);
+        return importData(COLLECTIONS.get(collection), collection, format, in, listener);
+    }
+
+    private <T> Progress importData(Class<T> type, String collection, Format format, InputStream in,
+                                    Consumer<Progress> listener) {
+        var run = new ImportRun<>(type, collection, listener);
+        try (var executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            var batch = new ArrayList<Parsed<T>>(batchSize);
+            try {
+                parse(objectMapper, type, format, in, parsed -> {
+                    run.read++;
+                    String error = parsed.error() != null ? parsed.error() : validate(parsed.document());
+                    if (error != null) {
+                        run.reject(new Rejection(parsed.line(), error));
+                        return;
+                    }
+                    batch.add(parsed);
+                    if (batch.size() == batchSize) {
+                        run.submit(executor, List.copyOf(batch));
+                        batch.clear();
+                    }
+                });
+            } catch (IOException e) { // unreadable input, e.g. broken CSV quoting: import what was read
+                run.reject(new Rejection(run.read + 1, "Could not read the input: " + e.getMessage()));
+            }
+            if (!batch.isEmpty()) {
+                run.submit(executor, List.copyOf(batch));
+            }
+            run.completeAll();
+        } finally {
+            if (run.inserted > 0 && type != Reservation.class) {
+                eventPublisher.publishEvent(new CatalogChangedEvent(collection, null));
+            }
+        }
+        return run.progress(true);
+    }
+
+    /**
+     * Writes every document of a collection to the output as NDJSON, reading them from a cursor.
+     */
+    public void export(String collection, OutputStream out) throws IOException {
+        checkCollection(collection);
+        Class<?> type = COLLECTIONS.get(collection);
+        ObjectWriter writer = objectMapper.writerFor(type).without(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+        var buffered = new BufferedOutputStream(out);
+        try (Stream<?> documents = mongoTemplate.stream(new Query().cursorBatchSize(batchSize), type)) {
+            for (Iterator<?> iterator = documents.iterator(); iterator.hasNext(); ) {
+                writer.writeValue(buffered, iterator.next());
+                buffered.write('\n');
+            }
+        }
+        buffered.flush();
+    }
+
+    /**
+     * Parses the input one document at a time. Lines that can't be mapped to the type are passed on with an error.
+     *
+     * @throws IOException if the input can't be read any further
+     */
+    static <T> void parse(ObjectMapper mapper, Class<T> type, Format format, InputStream in,
+                          Consumer<Parsed<T>> sink) throws IOException {
+        if (format == Format.NDJSON) {
+            ObjectReader reader = mapper.readerFor(type);
+            var lines = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+            long line = 0;
+            for (String text; (text = lines.readLine()) != null; ) {
+                line++;
+                if (text.isBlank()) {
+                    continue;
+                }
+                Parsed<T> parsed;
+                try {
+                    parsed = new Parsed<>(line, reader.readValue(text), null);
+                } catch (JsonProcessingException e) {
+                    parsed = new Parsed<>(line, null, e.getOriginalMessage());
+                }
+                sink.accept(parsed);
+            }
+            return;
+        }
+        try (MappingIterator<Map<String, String>> rows = CSV_MAPPER.readerForMapOf(String.class)
+                .with(CsvSchema.emptySchema().withHeader())
+                .readValues(in)) {
+            long line = 1; // the header
+            while (rows.hasNextValue()) {
+                Map<String, String> row = rows.nextValue();
+                line++;
+                Parsed<T> parsed;
+                try {
+                    parsed = new Parsed<>(line, mapper.convertValue(unflatten(row), type), null);
+                } catch (IllegalArgumentException e) {
+                    parsed = new Parsed<>(line, null, e.getCause() instanceof JsonProcessingException cause
+                            ? cause.getOriginalMessage() : e.getMessage());
+                }
+                sink.accept(parsed);
+            }
+        }
+    }
+
+    /**
+     * Turns a CSV row into a JSON-like document: dotted columns into nested objects and columns ending in
+     * {@code []} into lists.
+     */
+    @SuppressWarnings("unchecked")
+    static Map<String, Object> unflatten(Map<String, String> row) {
+        var document = new LinkedHashMap<String, Object>();
+        row.forEach((column, value) -> {
+            if (value == null || value.isEmpty()) {
+                return;
+            }
+            String[] path = column.trim().split("\\.");
+            Map<String, Object> parent = document;
+            for (int i = 0; i < path.length - 1; i++) {
+                if (!(parent.computeIfAbsent(path[i], key -> new LinkedHashMap<String, Object>())
+                        instanceof Map<?, ?> child)) {
+                    throw new IllegalArgumentException("Column '" + column + "' conflicts with another column");
+                }
+                parent = (Map<String, Object>) child;
+            }
+            String field = path[path.length - 1];
+            Object previous = field.endsWith("[]")
+                    ? parent.putIfAbsent(field.substring(0, field.length() - 2),
+                            Arrays.stream(value.split(";")).map(String::trim).filter(item -> !item.isEmpty()).toList())
+                    : parent.putIfAbsent(field, value);
+            if (previous != null) {
+                throw new IllegalArgumentException("Column '" + column + "' conflicts with another column");
+            }
+        });
+        return document;
+    }
+
+    /**
+     * Why a document can't be imported, or null if it can.
+     */
+    static String validate(Object document) {
+        return switch (document) {
+            case Hotel hotel when isBlank(hotel.getName()) -> "name is required";
+            case Hotel hotel when hotel.getRating() < 0 || hotel.getRating() > 5 -> "rating must be between 0 and 5";
+            case Room room when isBlank(room.getHotelId()) -> "hotelId is required";
+            case Room room when isBlank(room.getName()) -> "name is required";
+            case Room room when room.getPricePerNight() < 0 -> "pricePerNight must not be negative";
+            case Reservation reservation when isBlank(reservation.getUserId()) -> "userId is required";
+            case Reservation reservation when isBlank(reservation.getRoomId()) -> "roomId is required";
+            case Reservation reservation when reservation.getCheckIn() == null || reservation.getCheckOut() == null ->
+                    "checkIn and checkOut are required";
+            case Reservation reservation when !reservation.getCheckIn().before(reservation.getCheckOut()) ->
+                    "checkIn must be before checkOut";
+            case Reservation reservation when reservation.getPayment() == null -> "payment is required";
+            default -> null;
+        };
+    }
+
+    /**
+     * Inserts a batch of valid documents, rejecting rooms of unknown hotels, reservations of unknown rooms or users,
+     * reservations of fully booked nights and duplicates.
+     */
+    private <T> BatchResult write(Class<T> type, List<Parsed<T>> batch) {
+        var rejections = new ArrayList<Rejection>();
+        Set<String> hotelIds = type == Room.class ? existingHotelIds(batch) : Set.of();
+        Map<String, Room> rooms = type == Reservation.class ? rooms(batch) : Map.of();
+        Set<String> userIds = type == Reservation.class ? existingUserIds(batch) : Set.of();
+        List<Parsed<T>> valid = new ArrayList<>(batch.size());
+        for (Parsed<T> parsed : batch) {
+            String error = checkReferences(parsed.document(), hotelIds, rooms, userIds);
+            if (error == null) {
+                valid.add(parsed);
+            } else {
+                rejections.add(new Rejection(parsed.line(), error));
+            }
+        }
+        if (type == Reservation.class) {
+            valid = book(valid, rooms, rejections);
+        }
+        if (valid.isEmpty()) {
+            return new BatchResult(0, rejections);
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, type)
+                .insert(valid.stream().map(Parsed::document).toList());
+        var failed = new HashSet<Integer>();
+        long inserted;
+        try {
+            inserted = bulk.execute().getInsertedCount();
+        } catch (BulkOperationException e) {
+            List<Parsed<T>> written = valid;
+            e.getErrors().forEach(error -> {
+                failed.add(error.getIndex());
+                rejections.add(new Rejection(written.get(error.getIndex()).line(), error.getMessage()));
+            });
+            inserted = e.getResult().getInsertedCount();
+        } catch (RuntimeException e) { // e.g. a timeout, which doesn't tell which documents were inserted
+            if (type == Reservation.class) {
+                try {
+                    settle(valid, notInserted(valid, e));
+                } catch (RuntimeException settling) {
+                    e.addSuppressed(settling);
+                }
+            }
+            throw e;
+        }
+        if (type == Reservation.class) {
+            settle(valid, failed);
+        }
+        return new BatchResult(inserted, rejections);
+    }
+
+    private static String checkReferences(Object document, Set<String> hotelIds, Map<String, Room> rooms,
+                                          Set<String> userIds) {
+        if (document instanceof Room room && !hotelIds.contains(room.getHotelId())) {
+            return "Hotel '" + room.getHotelId() + "' not found";
+        }
+        if (document instanceof Reservation reservation) {
+            Room room = rooms.get(reservation.getRoomId());
+            if (room == null) {
+                return "Room '" + reservation.getRoomId() + "' not found";
+            }
+            if (!userIds.contains(reservation.getUserId())) {
+                return "User '" + reservation.getUserId() + "' not found";
+            }
+            String hotelId = Objects.toString(room.getHotelId(), "");
+            if (reservation.getHotelId() == null) {
+                reservation.setHotelId(hotelId);
+            } else if (!reservation.getHotelId().equals(hotelId)) {
+                return "Room '" + reservation.getRoomId() + "' is not in hotel '" + reservation.getHotelId() + "'";
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Books the nights of the active reservations of a batch before they are inserted, in a single bulk write, and
+     * gives every reservation an ID so it can be looked up if the insert fails.
+     *
+     * @return the reservations that were booked or are cancelled. The others are rejected.
+     */
+    private <T> List<Parsed<T>> book(List<Parsed<T>> reservations, Map<String, Room> rooms,
+                                     List<Rejection> rejections) {
+        List<Reservation> active = reservations.stream()
+                .map(parsed -> (Reservation) parsed.document())
+                .filter(reservation -> reservation.getCancellationDate() == null)
+                .toList();
+        Map<Integer, String> errors = availabilityService.reserveAll(active, rooms);
+        var booked = new ArrayList<Parsed<T>>(reservations.size());
+        int index = 0;
+        for (Parsed<T> parsed : reservations) {
+            var reservation = (Reservation) parsed.document();
+            String error = reservation.getCancellationDate() == null ? errors.get(index++) : null;
+            if (error == null) {
+                if (reservation.getId() == null) {
+                    reservation.setId(new ObjectId().toHexString());
+                }
+                booked.add(parsed);
+            } else {
+                rejections.add(new Rejection(parsed.line(), error));
+            }
+        }
+        return booked;
+    }
+
+    /**
+     * The indexes of the reservations of a batch that are not in the database, after their insert failed without
+     * telling which were inserted. All of them if that can't be looked up either.
+     */
+    private Set<Integer> notInserted(List<? extends Parsed<?>> reservations, RuntimeException failure) {
+        Set<String> inserted = Set.of();
+        try {
+            var query = new Query(Criteria.where("_id").in(reservations.stream()
+                    .map(parsed -> ((Reservation) parsed.document()).getId())
+                    .toList()));
+            query.fields().include("_id");
+            inserted = mongoTemplate.find(query, Reservation.class).stream()
+                    .map(Reservation::getId)
+                    .collect(Collectors.toSet());
+        } catch (RuntimeException e) {
+            failure.addSuppressed(e);
+        }
+        var missing = new HashSet<Integer>();
+        for (int i = 0; i < reservations.size(); i++) {
+            if (!inserted.contains(((Reservation) reservations.get(i).document()).getId())) {
+                missing.add(i);
+            }
+        }
+        return missing;
+    }
+
+    /**
+     * Releases the nights of the active reservations of a batch that were booked but not inserted, and adds those
+     * that were inserted to the daily stats, in a bulk write each.
+     */
+    private void settle(List<? extends Parsed<?>> reservations, Set<Integer> failed) {
+        var released = new ArrayList<Reservation>();
+        var recorded = new ArrayList<Reservation>(reservations.size());
+        for (int i = 0; i < reservations.size(); i++) {
+            var reservation = (Reservation) reservations.get(i).document();
+            if (!failed.contains(i)) {
+                recorded.add(reservation);
+            } else if (reservation.getCancellationDate() == null) {
+                released.add(reservation);
+            }
+        }
+        availabilityService.releaseAll(released);
+        dailyStatsService.recordBookings(recorded);
+    }
+
+    private Set<String> existingHotelIds(List<? extends Parsed<?>> rooms) {
+        var query = new Query(Criteria.where("_id").in(rooms.stream()
+                .map(parsed -> ((Room) parsed.document()).getHotelId())
+                .collect(Collectors.toSet())));
+        query.fields().include("_id");
+        return mongoTemplate.find(query, Hotel.class).stream().map(Hotel::getId).collect(Collectors.toSet());
+    }
+
+    private Map<String, Room> rooms(List<? extends Parsed<?>> reservations) {
+        var query = new Query(Criteria.where("_id").in(reservations.stream()
+                .map(parsed -> ((Reservation) parsed.document()).getRoomId())
+                .collect(Collectors.toSet())));
+        query.fields().include("_id", "hotelId", "availability");
+        return mongoTemplate.find(query, Room.class).stream().collect(Collectors.toMap(Room::getId, room -> room));
+    }
+
+    private Set<String> existingUserIds(List<? extends Parsed<?>> reservations) {
+        var query = new Query(Criteria.where("_id").in(reservations.stream()
+                .map(parsed -> ((Reservation) parsed.document()).getUserId())
+                .collect(Collectors.toSet())));
+        query.fields().include("_id");
+        return mongoTemplate.find(query, User.class).stream().map(User::getId).collect(Collectors.toSet());
+    }
+
+    /**
+     * The state of an import: the counts so far and the batches being written.
+     */
+    private final class ImportRun<T> {
+        private final Class<T> type;
+        private final String collection;
+        private final Consumer<Progress> listener;
+        private final Deque<Future<BatchResult>> pending = new ArrayDeque<>();
+        private final List<Rejection> rejections = new ArrayList<>();
+        private long read;
+        private long inserted;
+        private long rejected;
+
+        ImportRun(Class<T> type, String collection, Consumer<Progress> listener) {
+            this.type = type;
+            this.collection = collection;
+            this.listener = listener;
+        }
+
+        void reject(Rejection rejection) {
+            rejected++;
+            if (rejections.size() < MAX_REPORTED_REJECTIONS) {
+                rejections.add(rejection);
+            }
+        }
+
+        /**
+         * Starts writing a batch, first waiting for the oldest one if maxInFlight are pending.
+         */
+        void submit(ExecutorService executor, List<Parsed<T>> batch) {
+            if (pending.size() >= maxInFlight) {
+                complete(pending.removeFirst());
+            }
+            pending.addLast(executor.submit(() -> write(type, batch)));
+        }
+
+        void completeAll() {
+            while (!pending.isEmpty()) {
+                complete(pending.removeFirst());
+            }
+        }
+
+        private void complete(Future<BatchResult> future) {
+            BatchResult result;
+            try {
+                result = future.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Import interrupted", e);
+            } catch (ExecutionException e) {
+                throw e.getCause() instanceof RuntimeException cause ? cause : new IllegalStateException(e.getCause());
+            }
+            inserted += result.inserted();
+            result.rejections().forEach(this::reject);
+            listener.accept(progress(false));
+        }
+
+        Progress progress(boolean done) {
+            return new Progress(collection, read, inserted, rejected, List.copyOf(rejections), done);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package org.suitesquad.likehome.service;
+
+/**
+ * Published whenever a hotel or room document is written.
+ *
+ * @param collection the changed collection, {@link #HOTELS} or {@link #ROOMS}
+ * @param id         the changed document's ID, or null if any number of documents may have changed
+ * @param hotelId    the hotel the changed document belongs to, or null if unknown
+ */
+public record CatalogChangedEvent(String collection, String id, String hotelId) {
+    public static final String HOTELS = "hotels";
+    public static final String ROOMS = "rooms";
+
+    /**
+     * An event for a hotel, or for a room of an unknown hotel.
+     */
+    public CatalogChangedEvent(String collection, String id) {
+        this(collection, id, HOTELS.equals(collection) ? id : null);
+    }
+}
@@ -0,0 +1,67 @@
+package org.suitesquad.likehome.service;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Version numbers of the hotel and room catalog, bumped on every {@link CatalogChangedEvent}, for ETags and
+ * response caches. A hotel's version covers the hotel, its rooms and its reviews (which change its rating).
+ * <p>
+ * Versions are kept in memory and start from a random epoch, so versions handed out by another instance or
+ * before a restart never match. Events whose hotel is unknown bump every hotel's version.
+ * <p>
+ * Writes made by other instances only bump the versions when change streams are enabled
+ * (likehome.cache.change-streams). Without them, versions also change every likehome.cache.expire-after-write,
+ * when the caches expire and would serve those writes, so clients don't keep stale responses forever.
+ */
+@Service
+public class CatalogVersionService {
+    private final String epoch = Long.toString(ThreadLocalRandom.current().nextLong() >>> 1, 36);
+    private final AtomicLong catalog = new AtomicLong();
+    private final AtomicLong allHotels = new AtomicLong();
+    private final Map<String, Long> hotels = new ConcurrentHashMap<>();
+    /**
+     * How long versions last regardless of events in milliseconds, or 0 for as long as there are none.
+     */
+    private final long period;
+
+    public CatalogVersionService(@Value("${likehome.cache.change-streams}") boolean changeStreams,
+                                 @Value("${likehome.cache.expire-after-write}") Duration expireAfterWrite) {
+        this.period = changeStreams ? 0 : Math.max(1, expireAfterWrite.toMillis());
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (event.hotelId() == null) {
+            allHotels.incrementAndGet();
+        } else {
+            hotels.merge(event.hotelId(), 1L, Long::sum);
+        }
+        catalog.incrementAndGet();
+    }
+
+    /**
+     * The version of the whole catalog.
+     */
+    public String catalogVersion() {
+        return epoch() + "-" + catalog.get();
+    }
+
+    /**
+     * The version of a hotel, its rooms and its reviews.
+     */
+    public String hotelVersion(String hotelId) {
+        return epoch() + "-" + allHotels.get() + "-" + hotels.getOrDefault(hotelId, 0L);
+    }
+
+    private String epoch() {
+        return period == 0 ? epoch : epoch + "." + System.currentTimeMillis() / period;
+    }
+}
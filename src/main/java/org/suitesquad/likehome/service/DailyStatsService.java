@@ -0,0 +1,212 @@
+package org.suitesquad.likehome.service;
+
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.RenameCollectionOptions;
+import jakarta.annotation.PostConstruct;
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.mongodb.core.BulkOperations;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.index.IndexOperations;
+import org.springframework.data.mongodb.core.index.IndexResolver;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import org.springframework.stereotype.Service;
+import org.suitesquad.likehome.model.HotelDailyStats;
+import org.suitesquad.likehome.model.Reservation;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.suitesquad.likehome.service.Aggregations.night;
+import static org.suitesquad.likehome.service.Aggregations.stage;
+import static org.suitesquad.likehome.service.Aggregations.sumIf;
+import static org.suitesquad.likehome.service.AvailabilityService.endNight;
+import static org.suitesquad.likehome.service.AvailabilityService.firstNight;
+
+/**
+ * Maintains the {@link HotelDailyStats} rollup: the reservation totals per hotel and check-in day.
+ * <p>
+ * Every reservation change is applied with a single atomic $inc of the affected days, so the rollup must be
+ * updated through {@link #recordBooking}, {@link #recordDateChange} and {@link #recordCancellation} whenever a
+ * reservation is created, changed or cancelled. Reservations changed any other way are picked up by
+ * {@link #rebuild}.
+ */
+@Service
+public class DailyStatsService {
+    private static final AggregationOptions OPTIONS = AggregationOptions.builder().allowDiskUse(true).build();
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Value("${likehome.stats.rebuild.chunk-size}")
+    private int chunkSize;
+    @Value("${likehome.stats.rebuild.parallelism}")
+    private int parallelism;
+
+    /**
+     * Computes the rollup from the reservations if it was never computed (e.g. on first deployment).
+     */
+    @PostConstruct
+    public void initStats() {
+        if (mongoTemplate.estimatedCount(Reservation.class) > 0
+            && mongoTemplate.estimatedCount(HotelDailyStats.class) == 0) {
+            rebuild();
+        }
+    }
+
+    public void recordBooking(Reservation reservation) {
+        upsert(reservation.getHotelId(), firstNight(reservation.getCheckIn()),
+                contribution(reservation, reservation.getCheckIn(), reservation.getCheckOut(), 1)
+                        .inc("bookings", 1L));
+    }
+
+    public void recordCancellation(Reservation reservation) {
+        upsert(reservation.getHotelId(), firstNight(reservation.getCheckIn()),
+                contribution(reservation, reservation.getCheckIn(), reservation.getCheckOut(), -1)
+                        .inc("cancellations", 1L));
+    }
+
+    /**
+     * Records the bookings of several reservations, and the cancellations of those already cancelled, in a single
+     * bulk write.
+     */
+    public void recordBookings(Collection<Reservation> reservations) {
+        if (reservations.isEmpty()) {
+            return;
+        }
+        BulkOperations bulk = mongoTemplate.bulkOps(BulkMode.UNORDERED, HotelDailyStats.class);
+        for (Reservation reservation : reservations) {
+            boolean cancelled = reservation.getCancellationDate() != null;
+            long day = firstNight(reservation.getCheckIn());
+            Update update = contribution(reservation, reservation.getCheckIn(), reservation.getCheckOut(),
+                    cancelled ? 0 : 1)
+                    .inc("bookings", 1L)
+                    .inc("cancellations", cancelled ? 1L : 0L);
+            bulk.upsert(new Query(Criteria.where("_id").is(HotelDailyStats.id(reservation.getHotelId(), day))),
+                    update.setOnInsert("hotelId", reservation.getHotelId()).setOnInsert("day", day));
+        }
+        bulk.execute();
+    }
+
+    /**
+     * Moves a reservation's totals to its new check-in day.
+     *
+     * @param reservation the reservation with its old dates
+     */
+    public void recordDateChange(Reservation reservation, Date checkIn, Date checkOut) {
+        long oldDay = firstNight(reservation.getCheckIn());
+        long newDay = firstNight(checkIn);
+        if (oldDay == newDay) {
+            long nights = nights(checkIn, checkOut) - nights(reservation.getCheckIn(), reservation.getCheckOut());
+            if (nights != 0) {
+                upsert(reservation.getHotelId(), newDay, new Update().inc("nights", nights));
+            }
+            return;
+        }
+        upsert(reservation.getHotelId(), oldDay,
+                contribution(reservation, reservation.getCheckIn(), reservation.getCheckOut(), -1)
+                        .inc("bookings", -1L));
+        upsert(reservation.getHotelId(), newDay,
+                contribution(reservation, checkIn, checkOut, 1).inc("bookings", 1L));
+    }
+
+    /**
+     * Recomputes the rollup from the reservations into a new collection, which then replaces the rollup in a single
+     * rename, so reports read either the old or the new totals. Hotels are split into chunks of chunkSize, and each
+     * chunk is aggregated and merged into the new collection by the database, parallelism chunks at a time.
+     * Reservation changes made during a rebuild may be lost.
+     */
+    public void rebuild() {
+        String collection = mongoTemplate.getCollectionName(HotelDailyStats.class);
+        String rebuilt = collection + "_rebuild";
+        mongoTemplate.dropCollection(rebuilt);
+        mongoTemplate.createCollection(rebuilt);
+        IndexOperations indexes = mongoTemplate.indexOps(rebuilt);
+        IndexResolver.create(mongoTemplate.getConverter().getMappingContext())
+                .resolveIndexFor(HotelDailyStats.class)
+                .forEach(indexes::ensureIndex);
+
+        List<String> hotelIds = mongoTemplate.findDistinct(new Query(), "hotelId", Reservation.class, String.class);
+        var futures = new ArrayList<Future<?>>();
+        try (var executor = Executors.newFixedThreadPool(Math.max(1, parallelism), Thread.ofVirtual().factory())) {
+            for (int i = 0; i < hotelIds.size(); i += chunkSize) {
+                List<String> chunk = hotelIds.subList(i, Math.min(i + chunkSize, hotelIds.size()));
+                futures.add(executor.submit(() -> rebuild(chunk, rebuilt)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while rebuilding daily stats", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Rebuilding daily stats failed", e.getCause());
+        }
+        mongoTemplate.getCollection(rebuilt).renameCollection(
+                new MongoNamespace(mongoTemplate.getDb().getName(), collection),
+                new RenameCollectionOptions().dropTarget(true));
+    }
+
+    /**
+     * Aggregates the reservations of some hotels into the collection.
+     */
+    private void rebuild(List<String> hotelIds, String into) {
+        var cancelled = new Document("$gt", Arrays.asList("$cancellationDate", null));
+        var pointsUsed = new Document("$ifNull", List.of("$payment.pointsUsed", 0));
+        // as in Reservation.calculatePointsEarned
+        var pointsEarned = new Document("$toLong", new Document("$trunc", new Document("$subtract",
+                List.of("$totalPrice", new Document("$divide", List.of(pointsUsed, 100))))));
+        var nights = new Document("$max", List.of(1,
+                new Document("$subtract", List.of(night("$checkOut"), night("$checkIn")))));
+        var aggregation = Aggregation.newAggregation(
+                Aggregation.match(Criteria.where("hotelId").in(hotelIds)),
+                stage("$group", new Document("_id", new Document("hotelId", "$hotelId").append("day", night("$checkIn")))
+                        .append("bookings", new Document("$sum", 1L))
+                        .append("cancellations", sumIf(cancelled, 1L, 0L))
+                        .append("nights", sumIf(cancelled, 0L, new Document("$toLong", nights)))
+                        .append("revenue", sumIf(cancelled, 0.0, "$totalPrice"))
+                        .append("pointsEarned", sumIf(cancelled, 0L, pointsEarned))
+                        .append("pointsSpent", sumIf(cancelled, 0L, new Document("$toLong", pointsUsed)))),
+                stage("$set", new Document("hotelId", "$_id.hotelId")
+                        .append("day", new Document("$toLong", "$_id.day"))
+                        .append("_id", new Document("$concat",
+                                List.of("$_id.hotelId", ":", new Document("$toString", "$_id.day"))))),
+                stage("$merge", new Document("into", into)
+                        .append("whenMatched", "replace")
+                        .append("whenNotMatched", "insert"))
+        ).withOptions(OPTIONS);
+        mongoTemplate.aggregate(aggregation, Reservation.class, Document.class);
+    }
+
+    private void upsert(String hotelId, long day, Update update) {
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(HotelDailyStats.id(hotelId, day))),
+                update.setOnInsert("hotelId", hotelId).setOnInsert("day", day), HotelDailyStats.class);
+    }
+
+    /**
+     * The nights, revenue and points a reservation adds to the rollup with the given dates, or removes if sign is -1
+     * (none if it is 0).
+     */
+    static Update contribution(Reservation reservation, Date checkIn, Date checkOut, int sign) {
+        return new Update()
+                .inc("nights", sign * nights(checkIn, checkOut))
+                .inc("revenue", sign * reservation.getTotalPrice())
+                .inc("pointsEarned", (long) sign * reservation.calculatePointsEarned())
+                .inc("pointsSpent", (long) sign * reservation.getPayment().getPointsUsed());
+    }
+
+    private static long nights(Date checkIn, Date checkOut) {
+        return endNight(checkIn, checkOut) - firstNight(checkIn);
+    }
+}
@@ -0,0 +1,369 @@
+package org.suitesquad.likehome.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.suitesquad.likehome.model.Hotel;
+
+import java.util.*;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.Predicate;
+import java.util.regex.Pattern;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * In-memory trigram index over hotel names and locations (city, state and country), for the name and location
+ * filters of hotel searches and for autocomplete. Loaded at startup and updated on every
+ * {@link CatalogChangedEvent} for hotels.
+ * <p>
+ * A substring is looked up by intersecting the hotels containing each of its trigrams, then checking the
+ * candidates, so the cost depends on the number of matches rather than on the size of the catalog.
+ * Substrings shorter than a trigram are checked against every hotel.
+ * <p>
+ * Hotels written by other instances are only indexed when change streams are enabled
+ * (likehome.cache.change-streams), so search filters are only answered from the index then. Without them, the
+ * index is reloaded as often as the caches expire, and suggestions may miss those changes until then.
+ */
+@Service
+public class HotelSearchIndex {
+    /**
+     * Above this many matches, filters are left to the database as regexes instead of sending all IDs: matching
+     * many IDs costs as many index lookups, and a large $in query about as much as scanning the hotels.
+     */
+    static final int MAX_ID_FILTER = 1_000;
+    /**
+     * At most this many hotels are suggested at once.
+     */
+    static final int MAX_SUGGESTIONS = 50;
+    private static final int GRAM = 3;
+    private static final int MAX_FUZZY_CANDIDATES = 500;
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Value("${likehome.cache.change-streams}")
+    private boolean changeStreams;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final Map<String, Entry> entries = new HashMap<>();
+    private final Map<String, Set<String>> nameGrams = new HashMap<>();
+    private final Map<String, Set<String>> locationGrams = new HashMap<>();
+
+    /**
+     * A hotel's searchable fields, lowercased.
+     */
+    private record Entry(Hotel hotel, String name, String city, String state, String country) {
+        boolean locationContains(String text) {
+            return city.contains(text) || state.contains(text) || country.contains(text);
+        }
+    }
+
+    /**
+     * A hotel suggested for some text, with a higher score for a better match.
+     */
+    public record Suggestion(Hotel hotel, double score) {}
+
+    @PostConstruct
+    public void load() {
+        index(mongoTemplate.find(projection(new Query()), Hotel.class));
+    }
+
+    /**
+     * Replaces the indexed hotels.
+     */
+    void index(Collection<Hotel> hotels) {
+        lock.writeLock().lock();
+        try {
+            entries.clear();
+            nameGrams.clear();
+            locationGrams.clear();
+            hotels.forEach(this::add);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * Reloads the hotels unless change streams keep the index up to date. Changes made by this instance while the
+     * hotels are reloaded may be missed until the next reload.
+     */
+    @Scheduled(fixedDelayString = "${likehome.cache.expire-after-write}",
+            initialDelayString = "${likehome.cache.expire-after-write}")
+    public void reload() {
+        if (!changeStreams) {
+            load();
+        }
+    }
+
+    @EventListener
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (!CatalogChangedEvent.HOTELS.equals(event.collection())) {
+            return;
+        }
+        if (event.id() == null) {
+            load();
+            return;
+        }
+        Hotel hotel = mongoTemplate.findOne(projection(new Query(Criteria.where("_id").is(event.id()))), Hotel.class);
+        lock.writeLock().lock();
+        try {
+            remove(event.id());
+            if (hotel != null) {
+                add(hotel);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * The criteria for hotels whose location (city, state or country) and name contain the given texts,
+     * ignoring case, or null if both are blank. These are the IDs of the matching hotels if the index is kept
+     * up to date by change streams, and regexes for the database otherwise.
+     */
+    public Criteria criteria(String location, String name) {
+        if (isBlank(location) && isBlank(name)) {
+            return null;
+        }
+        if (changeStreams) {
+            Set<String> ids = findIds(location, name);
+            if (ids.size() <= MAX_ID_FILTER) {
+                return Criteria.where("_id").in(ids);
+            }
+        }
+        var criteria = new ArrayList<Criteria>();
+        if (!isBlank(location)) {
+            String regex = Pattern.quote(location);
+            criteria.add(new Criteria().orOperator(
+                    Criteria.where("location.city").regex(regex, "i"),
+                    Criteria.where("location.state").regex(regex, "i"),
+                    Criteria.where("location.country").regex(regex, "i")));
+        }
+        if (!isBlank(name)) {
+            criteria.add(Criteria.where("name").regex(Pattern.quote(name), "i"));
+        }
+        return new Criteria().andOperator(criteria);
+    }
+
+    /**
+     * The IDs of the hotels whose location (city, state or country) and name contain the given texts,
+     * ignoring case. Blank texts match every hotel.
+     */
+    public Set<String> findIds(String location, String name) {
+        lock.readLock().lock();
+        try {
+            Set<String> ids = null;
+            if (!isBlank(location)) {
+                String text = normalize(location);
+                ids = find(locationGrams, text, entry -> entry.locationContains(text));
+            }
+            if (!isBlank(name)) {
+                String text = normalize(name);
+                Set<String> named = find(nameGrams, text, entry -> entry.name().contains(text));
+                if (ids == null) {
+                    ids = named;
+                } else {
+                    ids.retainAll(named);
+                }
+            }
+            return ids != null ? ids : new HashSet<>(entries.keySet());
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * Suggests hotels for partially typed text, matched against the names and locations. Names rank above
+     * locations, and prefixes above other substrings. Words with a typo (up to 1 edit for words of 4 to 7
+     * letters, 2 for longer ones) still match, with a lower score.
+     *
+     * @param limit the maximum number of suggestions, at most {@link #MAX_SUGGESTIONS}
+     */
+    public List<Suggestion> suggest(String text, int limit) {
+        if (limit <= 0 || limit > MAX_SUGGESTIONS) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_SUGGESTIONS);
+        }
+        if (isBlank(text)) {
+            return List.of();
+        }
+        String query = normalize(text);
+        lock.readLock().lock();
+        try {
+            return candidates(query).stream()
+                    .map(entry -> new Suggestion(entry.hotel(), score(entry, query)))
+                    .filter(suggestion -> suggestion.score() > 0)
+                    .sorted(Comparator.comparingDouble(Suggestion::score).reversed()
+                            .thenComparing(suggestion -> suggestion.hotel().getRating(), Comparator.reverseOrder())
+                            .thenComparing(suggestion -> suggestion.hotel().getId()))
+                    .limit(limit)
+                    .toList();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private Set<String> find(Map<String, Set<String>> index, String text, Predicate<Entry> matches) {
+        var ids = new HashSet<String>();
+        if (text.length() < GRAM) {
+            entries.values().stream().filter(matches).forEach(entry -> ids.add(entry.hotel().getId()));
+            return ids;
+        }
+        List<Set<String>> postings = new ArrayList<>();
+        for (String gram : grams(text)) {
+            Set<String> posting = index.get(gram);
+            if (posting == null) {
+                return ids;
+            }
+            postings.add(posting);
+        }
+        postings.sort(Comparator.comparingInt(Set::size));
+        for (String id : postings.getFirst()) {
+            if (postings.stream().allMatch(posting -> posting.contains(id)) && matches.test(entries.get(id))) {
+                ids.add(id);
+            }
+        }
+        return ids;
+    }
+
+    /**
+     * The hotels sharing the most trigrams with the query, which includes every hotel containing it and
+     * most hotels containing it with a typo.
+     */
+    private Collection<Entry> candidates(String query) {
+        if (query.length() < GRAM) {
+            return entries.values();
+        }
+        var shared = new HashMap<String, Integer>();
+        for (String gram : grams(query)) {
+            for (var index : List.of(nameGrams, locationGrams)) {
+                index.getOrDefault(gram, Set.of()).forEach(id -> shared.merge(id, 1, Integer::sum));
+            }
+        }
+        return shared.entrySet().stream()
+                .sorted(Map.Entry.<String, Integer>comparingByValue().reversed())
+                .limit(MAX_FUZZY_CANDIDATES)
+                .map(match -> entries.get(match.getKey()))
+                .toList();
+    }
+
+    private static double score(Entry entry, String query) {
+        return Math.max(score(entry.name(), query),
+                0.8 * Math.max(score(entry.city(), query), Math.max(score(entry.state(), query),
+                        score(entry.country(), query))));
+    }
+
+    /**
+     * 1 if the field starts with the query, 0.9 if a word does, 0.7 if it contains it anywhere,
+     * less for a word starting with the query with typos, and 0 otherwise.
+     */
+    static double score(String field, String query) {
+        if (field.startsWith(query)) {
+            return 1;
+        }
+        int index = field.indexOf(query);
+        if (index > 0 && !Character.isLetterOrDigit(field.charAt(index - 1))) {
+            return 0.9;
+        }
+        if (index > 0) {
+            return 0.7;
+        }
+        int maxEdits = query.length() < 4 ? 0 : query.length() < 8 ? 1 : 2;
+        if (maxEdits == 0) {
+            return 0;
+        }
+        int best = Integer.MAX_VALUE;
+        for (String word : field.split("[^\\p{L}\\p{N}]+")) {
+            for (int length = query.length() - maxEdits; length <= query.length() + maxEdits; length++) {
+                if (length > 0 && length <= word.length()) {
+                    best = Math.min(best, editDistance(word.substring(0, length), query, maxEdits));
+                }
+            }
+        }
+        return best <= maxEdits ? 0.6 - 0.2 * best : 0;
+    }
+
+    /**
+     * Levenshtein distance, or maxEdits + 1 if it is larger than maxEdits.
+     */
+    static int editDistance(String a, String b, int maxEdits) {
+        if (Math.abs(a.length() - b.length()) > maxEdits) {
+            return maxEdits + 1;
+        }
+        int[] previous = new int[b.length() + 1];
+        int[] current = new int[b.length() + 1];
+        for (int j = 0; j <= b.length(); j++) {
+            previous[j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            current[0] = i;
+            int rowMin = current[0];
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                current[j] = Math.min(Math.min(current[j - 1] + 1, previous[j] + 1), previous[j - 1] + cost);
+                rowMin = Math.min(rowMin, current[j]);
+            }
+            if (rowMin > maxEdits) {
+                return maxEdits + 1;
+            }
+            int[] swap = previous;
+            previous = current;
+            current = swap;
+        }
+        return Math.min(previous[b.length()], maxEdits + 1);
+    }
+
+    private void add(Hotel hotel) {
+        Hotel.Location location = hotel.getLocation() != null ? hotel.getLocation() : new Hotel.Location();
+        var entry = new Entry(hotel, normalize(hotel.getName()), normalize(location.getCity()),
+                normalize(location.getState()), normalize(location.getCountry()));
+        entries.put(hotel.getId(), entry);
+        grams(entry.name()).forEach(gram -> nameGrams.computeIfAbsent(gram, g -> new HashSet<>()).add(hotel.getId()));
+        for (String field : List.of(entry.city(), entry.state(), entry.country())) {
+            grams(field).forEach(gram -> locationGrams.computeIfAbsent(gram, g -> new HashSet<>()).add(hotel.getId()));
+        }
+    }
+
+    private void remove(String hotelId) {
+        Entry entry = entries.remove(hotelId);
+        if (entry == null) {
+            return;
+        }
+        removeGrams(nameGrams, entry.name(), hotelId);
+        for (String field : List.of(entry.city(), entry.state(), entry.country())) {
+            removeGrams(locationGrams, field, hotelId);
+        }
+    }
+
+    private static void removeGrams(Map<String, Set<String>> index, String field, String hotelId) {
+        for (String gram : grams(field)) {
+            Set<String> posting = index.get(gram);
+            if (posting != null && posting.remove(hotelId) && posting.isEmpty()) {
+                index.remove(gram);
+            }
+        }
+    }
+
+    private static Set<String> grams(String text) {
+        var grams = new HashSet<String>();
+        for (int i = 0; i + GRAM <= text.length(); i++) {
+            grams.add(text.substring(i, i + GRAM));
+        }
+        return grams;
+    }
+
+    private static String normalize(String text) {
+        return text == null ? "" : text.toLowerCase(Locale.ROOT);
+    }
+
+    private static Query projection(Query query) {
+        query.fields().include("_id", "name", "rating", "location.city", "location.state", "location.country");
+        return query;
+    }
+}
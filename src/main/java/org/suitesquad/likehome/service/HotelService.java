@@ -1,29 +1,62 @@
 package org.suitesquad.likehome.service;
 
+import org.bson.Document;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.geo.Distance;
+import org.springframework.data.geo.GeoResult;
+import org.springframework.data.geo.Metrics;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
 import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.AggregationUpdate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
 import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.NearQuery;
 import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.suitesquad.likehome.model.Hotel;
+import org.suitesquad.likehome.model.ReviewStats;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
+import static org.suitesquad.likehome.service.Aggregations.stage;
+
 @Service
 public class HotelService {
+    /**
+     * The most hotels {@link #search} and {@link #findNear} return at once.
+     */
+    public static final int MAX_PAGE_SIZE = 500;
+
 //    @Autowired
 //    private HotelRepository hotelRepo;
 
     @Autowired
     private MongoTemplate hotelRepo;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private HotelSearchIndex searchIndex;
+    @Autowired
+    private CacheManager cacheManager;
 
     public void addHotelData(Hotel userDetails) {
         hotelRepo.insert(userDetails);
+        eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.HOTELS, userDetails.getId()));
     }
 
     public void addMultipleHotelData(List<Hotel> userDetail) {
-        hotelRepo.insert(userDetail);
+        hotelRepo.insert(userDetail, Hotel.class);
+        eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.HOTELS, null));
     }
 
     public List<Hotel> fetchAllHotelData() {
@@ -32,10 +65,12 @@ public class HotelService {
 
     public void deleteHotelData(Hotel userDetails) {
         hotelRepo.remove(userDetails);
+        eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.HOTELS, userDetails.getId()));
     }
 
     public void deleteAllHotelData() {
         hotelRepo.remove(Hotel.class);
+        eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.HOTELS, null));
     }
 
     public List<Hotel> findByName(String name) {
@@ -45,21 +80,189 @@ public class HotelService {
         return hotelRepo.find(query, Hotel.class);
     }
 
+    @Cacheable(cacheNames = "hotel", unless = "#result == null")
     public Optional<Hotel> findById(String id) {
-        var query = new Query();
-        query.addCriteria(Criteria.where("_id").is(id));
+        return Optional.ofNullable(hotelRepo.findOne(new Query(Criteria.where("_id").is(id)), Hotel.class));
+    }
+
+    /**
+     * Checks that a hotel exists without fetching it, answered from the _id index alone unless the hotel is cached.
+     */
+    public boolean existsById(String id) {
+        return hotelCache().get(id, Hotel.class) != null
+               || hotelRepo.exists(new Query(Criteria.where("_id").is(id)), Hotel.class);
+    }
 
-        List<Hotel> hotels = hotelRepo.find(query, Hotel.class);
-        return hotels.isEmpty() ? Optional.empty()
-                : Optional.of(hotels.getFirst());
+    private Cache hotelCache() {
+        return Objects.requireNonNull(cacheManager.getCache("hotel"));
     }
 
     public List<Hotel> findAllByQuery(Query query) {
         return hotelRepo.find(query, Hotel.class);
     }
 
-    public List<Hotel> findAll() {
-        return hotelRepo.findAll(Hotel.class);
+    /**
+     * Filters, sorts and pages hotels in the database. String filters are case-insensitive "contains" matches,
+     * looked up in the {@link HotelSearchIndex}.
+     * Pages are keyed on the last hotel of the previous page, so later pages cost the same as the first one.
+     *
+     * @param location     city, state, or country contains
+     * @param name         hotel name contains
+     * @param minRating    minimum rating
+     * @param sortByRating sort by rating (highest first) instead of by ID
+     * @param after        ID of the last hotel of the previous page, or null for the first page
+     * @param limit        maximum number of hotels to return, at most {@link #MAX_PAGE_SIZE}
+     */
+    public List<Hotel> search(String location, String name, double minRating, boolean sortByRating,
+                              String after, int limit) {
+        return search(location, name, minRating, sortByRating, after == null ? null : findById(after)
+                        .orElseThrow(() -> new IllegalArgumentException("Hotel '" + after + "' not found")),
+                limit);
+    }
+
+    /**
+     * Same as {@link #search(String, String, double, boolean, String, int)}, after the given hotel.
+     *
+     * @param after the last hotel of the previous page, or null for the first page
+     */
+    public List<Hotel> search(String location, String name, double minRating, boolean sortByRating,
+                              Hotel after, int limit) {
+        checkPageSize(limit);
+        return findAllByQuery(buildSearchQuery(searchIndex.criteria(location, name), minRating, sortByRating,
+                after, limit));
+    }
+
+    /**
+     * Finds the hotels within a radius of a point, nearest first. Distances are computed by the database
+     * from the hotels' coordinates, so hotels without coordinates are never found.
+     *
+     * @param radiusKm  maximum distance in kilometers
+     * @param minRating minimum rating
+     * @param skip      number of nearest hotels to skip
+     * @param limit     maximum number of hotels to return, at most {@link #MAX_PAGE_SIZE}
+     * @return the hotels with their distances in kilometers
+     */
+    public List<GeoResult<Hotel>> findNear(double latitude, double longitude, double radiusKm, double minRating,
+                                           int skip, int limit) {
+        checkPageSize(limit);
+        if (latitude < -90 || latitude > 90 || longitude < -180 || longitude > 180) {
+            throw new IllegalArgumentException("Latitude must be between -90 and 90, longitude between -180 and 180");
+        }
+        if (radiusKm <= 0) {
+            throw new IllegalArgumentException("Radius must be positive");
+        }
+        var query = NearQuery.near(new GeoJsonPoint(longitude, latitude))
+                .spherical(true)
+                .maxDistance(new Distance(radiusKm, Metrics.KILOMETERS));
+        if (minRating > 0) {
+            query.query(new Query(Criteria.where("rating").gte(minRating)));
+        }
+        query.skip(skip).limit(limit);
+        return hotelRepo.geoNear(query, Hotel.class).getContent();
+    }
+
+    /**
+     * @throws IllegalArgumentException if the limit is not between 1 and {@link #MAX_PAGE_SIZE}
+     */
+    public static void checkPageSize(int limit) {
+        if (limit <= 0 || limit > MAX_PAGE_SIZE) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_PAGE_SIZE);
+        }
+    }
+
+    /**
+     * Builds the query behind {@link #search}.
+     *
+     * @param textFilter the name and location filters from {@link HotelSearchIndex#criteria}, or null
+     * @param after      the last hotel of the previous page, or null for the first page
+     */
+    public static Query buildSearchQuery(Criteria textFilter, double minRating, boolean sortByRating,
+                                         Hotel after, Integer limit) {
+        var criteria = new ArrayList<Criteria>();
+        if (textFilter != null) {
+            criteria.add(textFilter);
+        }
+        if (minRating > 0) {
+            criteria.add(Criteria.where("rating").gte(minRating));
+        }
+        if (after != null) {
+            criteria.add(sortByRating
+                    ? new Criteria().orOperator(
+                            Criteria.where("rating").lt(after.getRating()),
+                            Criteria.where("rating").is(after.getRating()).and("_id").gt(after.getId()))
+                    : Criteria.where("_id").gt(after.getId()));
+        }
+
+        var query = criteria.isEmpty() ? new Query()
+                : new Query(new Criteria().andOperator(criteria));
+        query.with(sortByRating ? Sort.by(Sort.Order.desc("rating"), Sort.Order.asc("_id"))
+                : Sort.by("_id"));
+        if (limit != null) {
+            if (limit <= 0) {
+                throw new IllegalArgumentException("Limit must be positive");
+            }
+            query.limit(limit);
+        }
+        return query;
+    }
+
+    /**
+     * Applies a review change to the hotel's review count and rating sum, and updates the rating from them, in a
+     * single atomic pipeline update. The listed rating is kept when the first review arrives and restored when the
+     * last one is deleted.
+     */
+    public void applyReviewChange(String hotelId, int countDelta, double ratingSumDelta) {
+        var update = AggregationUpdate.from(List.of(
+                stage("$set", new Document(keepListedRating())
+                        .append("reviewCount", new Document("$add", List.of(reviewCount(), countDelta)))
+                        .append("ratingSum", new Document("$add",
+                                List.of(new Document("$ifNull", List.of("$ratingSum", 0.0)), ratingSumDelta)))),
+                stage("$set", new Document("rating", new Document("$cond", List.of(
+                        new Document("$gt", List.of("$reviewCount", 0)),
+                        new Document("$divide", List.of("$ratingSum", "$reviewCount")),
+                        listedRating()))))));
+        if (hotelRepo.updateFirst(new Query(Criteria.where("_id").is(hotelId)), update, Hotel.class)
+                    .getMatchedCount() > 0) {
+            eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.HOTELS, hotelId));
+        }
+    }
+
+    /**
+     * Overwrites the review count, rating sum and rating of every hotel.
+     * Hotels absent from the map get no reviews and their listed rating back.
+     */
+    public void setReviewTotals(Map<String, ReviewStats> statsByHotel) {
+        hotelRepo.updateMulti(new Query(), AggregationUpdate.from(List.of(
+                stage("$set", keepListedRating()),
+                stage("$set", new Document("reviewCount", 0)
+                        .append("ratingSum", 0.0)
+                        .append("rating", listedRating())))), Hotel.class);
+        if (!statsByHotel.isEmpty()) {
+            var bulk = hotelRepo.bulkOps(BulkMode.UNORDERED, Hotel.class);
+            statsByHotel.forEach((hotelId, stats) -> bulk.updateOne(
+                    new Query(Criteria.where("_id").is(hotelId)),
+                    new Update().set("reviewCount", stats.getCount())
+                            .set("ratingSum", stats.getRatingSum())
+                            .set("rating", stats.getRatingSum() / stats.getCount())));
+            bulk.execute();
+        }
+        eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.HOTELS, null));
+    }
+
+    /**
+     * Sets listedRating to the rating of hotels without reviews, whose rating is still the listed one.
+     */
+    private static Document keepListedRating() {
+        return new Document("listedRating", new Document("$cond", List.of(
+                new Document("$eq", List.of(reviewCount(), 0)), "$rating", "$listedRating")));
+    }
+
+    private static Document listedRating() {
+        return new Document("$ifNull", List.of("$listedRating", "$rating"));
+    }
+
+    private static Document reviewCount() {
+        return new Document("$ifNull", List.of("$reviewCount", 0));
     }
 
     /*
@@ -0,0 +1,105 @@
+package org.suitesquad.likehome.service;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.ReactiveMongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.stereotype.Service;
+import org.suitesquad.likehome.model.Hotel;
+import org.suitesquad.likehome.model.Review;
+import org.suitesquad.likehome.model.Room;
+import org.suitesquad.likehome.model.User;
+import org.suitesquad.likehome.repository.ReactiveHotelRepository;
+import org.suitesquad.likehome.repository.ReactiveReviewRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Non-blocking reads of the hotel catalog, for streaming the public read endpoints.
+ * Mirrors the read methods of {@link HotelService}, {@link RoomService} and {@link ReviewService}.
+ */
+@Service
+public class ReactiveCatalogService {
+
+    @Autowired
+    private ReactiveHotelRepository hotelRepo;
+    @Autowired
+    private ReactiveReviewRepository reviewRepo;
+    @Autowired
+    private ReactiveMongoTemplate mongoTemplate;
+    @Autowired
+    private HotelSearchIndex searchIndex;
+
+    /**
+     * @see HotelService#search
+     */
+    public Flux<Hotel> searchHotels(String location, String name, double minRating, boolean sortByRating,
+                                    String after, int limit) {
+        HotelService.checkPageSize(limit);
+        Mono<Optional<Hotel>> afterHotel = after == null ? Mono.just(Optional.empty())
+                : findHotel(after).map(Optional::of);
+        return afterHotel.flatMapMany(hotel -> mongoTemplate.find(
+                HotelService.buildSearchQuery(searchIndex.criteria(location, name), minRating, sortByRating,
+                        hotel.orElse(null), limit),
+                Hotel.class));
+    }
+
+    /**
+     * @return the hotel, or an error if it does not exist
+     */
+    public Mono<Hotel> findHotel(String hotelId) {
+        return hotelRepo.findById(hotelId)
+                .switchIfEmpty(Mono.error(() -> new RuntimeException("Hotel '" + hotelId + "' not found")));
+    }
+
+    /**
+     * @return nothing if the hotel exists, or an error if it does not, without fetching it
+     */
+    public Mono<Void> checkHotelExists(String hotelId) {
+        return hotelRepo.existsById(hotelId)
+                .flatMap(exists -> exists ? Mono.<Void>empty()
+                        : Mono.error(new RuntimeException("Hotel '" + hotelId + "' not found")));
+    }
+
+    /**
+     * @see RoomService#findIdsByHotelIds
+     */
+    public Mono<Map<String, Collection<String>>> findRoomIdsByHotelIds(Collection<String> hotelIds) {
+        var query = new Query(Criteria.where("hotelId").in(hotelIds));
+        query.fields().include("_id", "hotelId");
+
+        return mongoTemplate.find(query, Room.class)
+                .collectMultimap(Room::getHotelId, Room::getId);
+    }
+
+    /**
+     * @see ReviewService#findPage
+     */
+    public Flux<Review> findReviews(String hotelId, boolean sortByRating, String after, int limit) {
+        HotelService.checkPageSize(limit);
+        Mono<Optional<Review>> afterReview = after == null ? Mono.just(Optional.empty())
+                : reviewRepo.findById(after)
+                        .filter(review -> hotelId.equals(review.getHotelId()))
+                        .map(Optional::of)
+                        .switchIfEmpty(Mono.error(() -> new IllegalArgumentException("Review '" + after + "' not found")));
+        return afterReview.flatMapMany(review -> mongoTemplate.find(
+                ReviewService.buildPageQuery(hotelId, sortByRating, review.orElse(null), limit), Review.class));
+    }
+
+    /**
+     * Fetches the first names of several users in one query, projecting only {@code firstName}.
+     * Unknown users are absent from the returned map.
+     */
+    public Mono<Map<String, String>> findFirstNames(Collection<String> userIds) {
+        var query = new Query(Criteria.where("_id").in(userIds));
+        query.fields().include("firstName");
+
+        return mongoTemplate.find(query, User.class)
+                .filter(user -> user.getFirstName() != null)
+                .collectMap(User::getId, User::getFirstName);
+    }
+}
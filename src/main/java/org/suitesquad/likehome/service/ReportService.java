@@ -0,0 +1,214 @@
+package org.suitesquad.likehome.service;
+
+import org.bson.Document;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.aggregation.Aggregation;
+import org.springframework.data.mongodb.core.aggregation.AggregationOptions;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.stereotype.Service;
+import org.suitesquad.likehome.model.HotelDailyStats;
+import org.suitesquad.likehome.model.Reservation;
+import org.suitesquad.likehome.model.Room;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.suitesquad.likehome.service.Aggregations.night;
+import static org.suitesquad.likehome.service.Aggregations.stage;
+
+/**
+ * Booking reports, computed by aggregation pipelines in the database and streamed as the rows are produced,
+ * so reports over any number of reservations take constant memory. Nights are UTC days, as in
+ * {@link AvailabilityService}.
+ * <p>
+ * Callers must close the returned streams.
+ */
+@Service
+public class ReportService {
+    /**
+     * Occupancy reports cover at most this many nights.
+     */
+    static final int MAX_OCCUPANCY_NIGHTS = 366;
+    private static final long DAY_MS = 86_400_000L;
+    private static final AggregationOptions OPTIONS = AggregationOptions.builder()
+            .allowDiskUse(true)
+            .cursorBatchSize(1000)
+            .build();
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    /**
+     * The rows of a booking report are per hotel, and also per check-in day or month unless TOTAL.
+     */
+    public enum Interval {
+        TOTAL, DAY, MONTH;
+
+        public static Interval of(String interval) {
+            try {
+                return interval == null ? TOTAL : valueOf(interval.toUpperCase(Locale.ROOT));
+            } catch (IllegalArgumentException e) {
+                throw new IllegalArgumentException("Interval must be total, day or month");
+            }
+        }
+    }
+
+    /**
+     * The booked units of a hotel's rooms on one night.
+     *
+     * @param capacity  the units of all the hotel's rooms
+     * @param occupancy bookedUnits / capacity
+     */
+    public record Occupancy(String hotelId, LocalDate night, long bookedUnits, long capacity, double occupancy) {}
+
+    /**
+     * The reservations of a hotel checking in during a period.
+     *
+     * @param period           the first day of the period, or null for the whole date range
+     * @param cancellationRate cancellations / bookings
+     * @param nights           the nights booked, not counting cancelled reservations
+     * @param revenue          the total price of the reservations that were not cancelled
+     * @param pointsRedeemed   the reward points used to pay for the reservations that were not cancelled
+     */
+    public record Bookings(String hotelId, LocalDate period, long bookings, long cancellations,
+                           double cancellationRate, long nights, double revenue, long pointsRedeemed) {}
+
+    /**
+     * The booked units per hotel and night, for the nights in [from, to), ordered by hotel and night. Nights
+     * without bookings are left out.
+     *
+     * @param hotelId only this hotel, or null for all hotels
+     */
+    public Stream<Occupancy> occupancy(LocalDate from, LocalDate to, String hotelId) {
+        checkRange(from, to);
+        if (ChronoUnit.DAYS.between(from, to) > MAX_OCCUPANCY_NIGHTS) {
+            throw new IllegalArgumentException("Occupancy reports cover at most " + MAX_OCCUPANCY_NIGHTS + " nights");
+        }
+        var criteria = Criteria.where("cancellationDate").is(null)
+                .and("checkIn").lt(toDate(to))
+                .and("checkOut").gte(toDate(from));
+        if (hotelId != null) {
+            criteria.and("hotelId").is(hotelId);
+        }
+        long fromNight = from.toEpochDay();
+        long toNight = to.toEpochDay();
+        // the nights of each stay within [from, to), as in AvailabilityService.firstNight and endNight
+        var nights = new Document("$let", new Document()
+                .append("vars", new Document("first", night("$checkIn")))
+                .append("in", new Document("$range", List.of(
+                        new Document("$max", List.of("$$first", fromNight)),
+                        new Document("$min", List.of(
+                                new Document("$max", List.of(new Document("$add", List.of("$$first", 1)),
+                                        night("$checkOut"))),
+                                toNight))))));
+        var aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                stage("$project", new Document("hotelId", 1).append("night", nights)),
+                stage("$unwind", "$night"),
+                stage("$group", new Document("_id", new Document("hotelId", "$hotelId").append("night", "$night"))
+                        .append("bookedUnits", new Document("$sum", 1))),
+                stage("$sort", new Document("_id.hotelId", 1).append("_id.night", 1))
+        ).withOptions(OPTIONS);
+
+        Map<String, Long> capacities = capacities(hotelId);
+        return mongoTemplate.aggregateStream(aggregation, Reservation.class, Document.class).map(row -> {
+            Document id = row.get("_id", Document.class);
+            String hotel = id.getString("hotelId");
+            long bookedUnits = ((Number) row.get("bookedUnits")).longValue();
+            long capacity = capacities.getOrDefault(hotel, 0L);
+            return new Occupancy(hotel, LocalDate.ofEpochDay(((Number) id.get("night")).longValue()),
+                    bookedUnits, capacity, capacity == 0 ? 0 : (double) bookedUnits / capacity);
+        });
+    }
+
+    /**
+     * The bookings, cancellations, revenue and redeemed points per hotel (and period) of the reservations checking
+     * in during [from, to), ordered by hotel and period. Read from the {@link HotelDailyStats} rollup, so the cost
+     * depends on the number of hotels and days, not on the number of reservations.
+     *
+     * @param from     the first check-in day, or null for no lower bound
+     * @param to       the day after the last check-in day, or null for no upper bound
+     * @param hotelId  only this hotel, or null for all hotels
+     */
+    public Stream<Bookings> bookings(LocalDate from, LocalDate to, String hotelId, Interval interval) {
+        if (from != null && to != null) {
+            checkRange(from, to);
+        }
+        var criteria = new Criteria();
+        if (from != null || to != null) {
+            criteria = Criteria.where("day");
+            if (from != null) {
+                criteria.gte(from.toEpochDay());
+            }
+            if (to != null) {
+                criteria.lt(to.toEpochDay());
+            }
+        }
+        if (hotelId != null) {
+            criteria.and("hotelId").is(hotelId);
+        }
+        var group = new Document("hotelId", "$hotelId");
+        if (interval != Interval.TOTAL) {
+            group.append("period", new Document("$dateToString", new Document()
+                    .append("format", interval == Interval.DAY ? "%Y-%m-%d" : "%Y-%m-01")
+                    .append("date", new Document("$toDate", new Document("$multiply", List.of("$day", DAY_MS))))));
+        }
+        var aggregation = Aggregation.newAggregation(
+                Aggregation.match(criteria),
+                stage("$group", new Document("_id", group)
+                        .append("bookings", new Document("$sum", "$bookings"))
+                        .append("cancellations", new Document("$sum", "$cancellations"))
+                        .append("nights", new Document("$sum", "$nights"))
+                        .append("revenue", new Document("$sum", "$revenue"))
+                        .append("pointsRedeemed", new Document("$sum", "$pointsSpent"))),
+                stage("$sort", new Document("_id.hotelId", 1).append("_id.period", 1))
+        ).withOptions(OPTIONS);
+
+        return mongoTemplate.aggregateStream(aggregation, HotelDailyStats.class, Document.class).map(row -> {
+            Document id = row.get("_id", Document.class);
+            String period = id.getString("period");
+            long bookings = ((Number) row.get("bookings")).longValue();
+            long cancellations = ((Number) row.get("cancellations")).longValue();
+            return new Bookings(id.getString("hotelId"), period == null ? null : LocalDate.parse(period),
+                    bookings, cancellations, bookings == 0 ? 0 : (double) cancellations / bookings,
+                    ((Number) row.get("nights")).longValue(),
+                    ((Number) row.get("revenue")).doubleValue(),
+                    ((Number) row.get("pointsRedeemed")).longValue());
+        });
+    }
+
+    /**
+     * The number of units of each hotel's rooms. Rooms without an availability are a single unit.
+     */
+    private Map<String, Long> capacities(String hotelId) {
+        var aggregation = Aggregation.newAggregation(
+                Aggregation.match(hotelId == null ? new Criteria() : Criteria.where("hotelId").is(hotelId)),
+                stage("$group", new Document("_id", "$hotelId")
+                        .append("units", new Document("$sum", new Document("$max", List.of(1, "$availability"))))));
+        var capacities = new HashMap<String, Long>();
+        mongoTemplate.aggregate(aggregation, Room.class, Document.class).forEach(row ->
+                capacities.put(row.getString("_id"), ((Number) row.get("units")).longValue()));
+        return capacities;
+    }
+
+    private static void checkRange(LocalDate from, LocalDate to) {
+        if (from == null || to == null) {
+            throw new IllegalArgumentException("Both from and to dates are required");
+        }
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("The from date must be before the to date");
+        }
+    }
+
+    private static Date toDate(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+}
@@ -1,10 +1,15 @@
 package org.suitesquad.likehome.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.suitesquad.likehome.model.Reservation;
 import org.suitesquad.likehome.repository.ReservationRepository;
 
+import java.util.Date;
 import java.util.List;
 import java.util.Optional;
 
@@ -13,6 +18,8 @@ public class ReservationService {
 
     @Autowired
     private ReservationRepository reservationRepo;
+    @Autowired
+    private MongoTemplate mongoTemplate;
 
     public Reservation addReservationData(Reservation reservationDetails) {
         return reservationRepo.insert(reservationDetails);
@@ -42,6 +49,13 @@ public class ReservationService {
         return reservationRepo.findByHotelId(hotelId);
     }
 
+    /**
+     * @return all reservations that are not cancelled and not checked out yet
+     */
+    public List<Reservation> findActive() {
+        return reservationRepo.findByCancellationDateIsNullAndCheckOutAfter(new Date());
+    }
+
     public Optional<Reservation> findById(String id) {
         return reservationRepo.findById(id);
     }
@@ -57,4 +71,34 @@ public class ReservationService {
     public void save(Reservation reservation) {
         reservationRepo.save(reservation);
     }
+
+    /**
+     * Atomically cancels a reservation and marks its payment as refunded.
+     *
+     * @return the reservation as it was when cancelled, so with the dates that were cancelled,
+     * or empty if it does not exist or was already cancelled
+     */
+    public Optional<Reservation> cancel(String id, Date cancellationDate) {
+        return Optional.ofNullable(mongoTemplate.findAndModify(activeReservation(id),
+                new Update().set("cancellationDate", cancellationDate).set("payment.paymentStatus", "Refunded"),
+                Reservation.class));
+    }
+
+    /**
+     * Atomically changes the dates of a reservation, if they are still the old dates.
+     *
+     * @return whether the reservation was changed, false if it does not exist, was cancelled or had its dates
+     * changed concurrently
+     */
+    public boolean updateDates(String id, Date oldCheckIn, Date oldCheckOut, Date checkIn, Date checkOut) {
+        return mongoTemplate.updateFirst(
+                activeReservation(id).addCriteria(Criteria.where("checkIn").is(oldCheckIn)
+                        .and("checkOut").is(oldCheckOut)),
+                new Update().set("checkIn", checkIn).set("checkOut", checkOut),
+                Reservation.class).getModifiedCount() > 0;
+    }
+
+    private static Query activeReservation(String id) {
+        return new Query(Criteria.where("_id").is(id).and("cancellationDate").isNull());
+    }
 }
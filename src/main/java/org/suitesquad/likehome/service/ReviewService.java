@@ -1,24 +1,95 @@
 package org.suitesquad.likehome.service;
 
+import com.mongodb.MongoNamespace;
+import com.mongodb.client.model.RenameCollectionOptions;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.BulkOperations.BulkMode;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
+import org.suitesquad.likehome.model.Hotel;
 import org.suitesquad.likehome.model.Review;
+import org.suitesquad.likehome.model.ReviewStats;
 import org.suitesquad.likehome.repository.ReviewRepository;
 
+import java.util.HashMap;
 import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
 @Service
 public class ReviewService {
     @Autowired
     private ReviewRepository reviewRepository;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private HotelService hotelService;
+
+    /**
+     * Computes the review stats and hotel ratings from the reviews if they were never computed
+     * (e.g. on first deployment).
+     */
+    @PostConstruct
+    public void initStats() {
+        if (mongoTemplate.estimatedCount(Review.class) > 0
+            && (mongoTemplate.estimatedCount(ReviewStats.class) == 0
+                || !mongoTemplate.exists(new Query(Criteria.where("reviewCount").exists(true)), Hotel.class))) {
+            rebuildStats();
+        }
+    }
 
     public List<Review> findByHotelId(String hotelId) {
         return reviewRepository.findByHotelId(hotelId);
     }
 
+    /**
+     * Gets a page of a hotel's reviews, newest or highest rated first.
+     * Pages are keyed on the last review of the previous page, so later pages cost the same as the first one.
+     *
+     * @param sortByRating sort by rating instead of by review date
+     * @param after        ID of the last review of the previous page, or null for the first page
+     * @param limit        maximum number of reviews to return, at most {@link HotelService#MAX_PAGE_SIZE}
+     */
+    public List<Review> findPage(String hotelId, boolean sortByRating, String after, int limit) {
+        HotelService.checkPageSize(limit);
+        return mongoTemplate.find(buildPageQuery(hotelId, sortByRating,
+                after == null ? null : findById(after)
+                        .filter(review -> hotelId.equals(review.getHotelId()))
+                        .orElseThrow(() -> new IllegalArgumentException("Review '" + after + "' not found")),
+                limit), Review.class);
+    }
+
+    /**
+     * Builds the query behind {@link #findPage}.
+     *
+     * @param after the last review of the previous page, or null for the first page
+     */
+    public static Query buildPageQuery(String hotelId, boolean sortByRating, Review after, int limit) {
+        String field = sortByRating ? "rating" : "reviewDate";
+        var criteria = Criteria.where("hotelId").is(hotelId);
+        if (after != null) {
+            Object value = sortByRating ? after.getRating() : after.getReviewDate();
+            criteria = criteria.orOperator(
+                    Criteria.where(field).lt(value),
+                    Criteria.where(field).is(value).and("_id").lt(after.getId()));
+        }
+
+        return new Query(criteria).with(Sort.by(Sort.Order.desc(field), Sort.Order.desc("_id")))
+                .limit(limit);
+    }
+
+    public Optional<ReviewStats> findStatsByHotelId(String hotelId) {
+        return Optional.ofNullable(mongoTemplate.findById(hotelId, ReviewStats.class));
+    }
+
     public void addReviewData(Review reviewDetails) {
         reviewRepository.insert(reviewDetails);
+        updateStats(reviewDetails.getHotelId(), 1, reviewDetails.getRating(), null, reviewDetails.getRating());
     }
 
     public Optional<Review> findById(String id) {
@@ -31,10 +102,80 @@ public class ReviewService {
     }
 
     public void updateReviewData(Review reviewDetails) {
-        reviewRepository.save(reviewDetails);
+        Review old = mongoTemplate.findAndReplace(new Query(Criteria.where("_id").is(reviewDetails.getId())),
+                reviewDetails);
+        if (old == null) {
+            throw new IllegalArgumentException("Review '" + reviewDetails.getId() + "' not found");
+        }
+        updateStats(reviewDetails.getHotelId(), 0, reviewDetails.getRating() - old.getRating(),
+                old.getRating(), reviewDetails.getRating());
     }
 
     public void deleteById(String id) {
-        reviewRepository.deleteById(id);
+        Review removed = mongoTemplate.findAndRemove(new Query(Criteria.where("_id").is(id)), Review.class);
+        if (removed != null) {
+            updateStats(removed.getHotelId(), -1, -removed.getRating(), removed.getRating(), null);
+        }
+    }
+
+    /**
+     * Applies a review change to the hotel's stats with a single atomic update, and to the hotel's rating.
+     *
+     * @param oldRating the rating before the change, or null if the review was added
+     * @param newRating the rating after the change, or null if the review was removed
+     */
+    private void updateStats(String hotelId, int countDelta, double ratingSumDelta, Double oldRating, Double newRating) {
+        var update = new Update().inc("count", countDelta).inc("ratingSum", ratingSumDelta);
+        String oldBucket = oldRating == null ? null : ReviewStats.bucket(oldRating);
+        String newBucket = newRating == null ? null : ReviewStats.bucket(newRating);
+        if (oldBucket != null && oldBucket.equals(newBucket)) {
+            oldBucket = newBucket = null;
+        }
+        if (oldBucket != null) {
+            update.inc("histogram." + oldBucket, -1);
+        }
+        if (newBucket != null) {
+            update.inc("histogram." + newBucket, 1);
+        }
+        mongoTemplate.upsert(new Query(Criteria.where("_id").is(hotelId)), update, ReviewStats.class);
+        hotelService.applyReviewChange(hotelId, countDelta, ratingSumDelta);
+    }
+
+    /**
+     * Recomputes the review stats and rating of every hotel, streaming only the hotel ID and rating of each review.
+     * The stats are written to a new collection, which then replaces the old one in a single rename, so readers see
+     * either the old or the new stats. Review changes made while this runs may be lost.
+     */
+    public void rebuildStats() {
+        var query = new Query();
+        query.fields().include("hotelId", "rating");
+        var statsByHotel = new HashMap<String, ReviewStats>();
+        try (Stream<Review> reviews = mongoTemplate.stream(query, Review.class)) {
+            reviews.forEach(review -> {
+                ReviewStats stats = statsByHotel.computeIfAbsent(review.getHotelId(), hotelId -> {
+                    var newStats = new ReviewStats();
+                    newStats.setHotelId(hotelId);
+                    newStats.setHistogram(new HashMap<>());
+                    return newStats;
+                });
+                stats.setCount(stats.getCount() + 1);
+                stats.setRatingSum(stats.getRatingSum() + review.getRating());
+                stats.getHistogram().merge(ReviewStats.bucket(review.getRating()), 1, Integer::sum);
+            });
+        }
+
+        String collection = mongoTemplate.getCollectionName(ReviewStats.class);
+        String rebuilt = collection + "_rebuild";
+        mongoTemplate.dropCollection(rebuilt);
+        mongoTemplate.createCollection(rebuilt);
+        if (!statsByHotel.isEmpty()) {
+            mongoTemplate.bulkOps(BulkMode.UNORDERED, ReviewStats.class, rebuilt)
+                    .insert(List.copyOf(statsByHotel.values()))
+                    .execute();
+        }
+        mongoTemplate.getCollection(rebuilt).renameCollection(
+                new MongoNamespace(mongoTemplate.getDb().getName(), collection),
+                new RenameCollectionOptions().dropTarget(true));
+        hotelService.setReviewTotals(statsByHotel);
     }
 }
@@ -0,0 +1,52 @@
+package org.suitesquad.likehome.service;
+
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.function.BiConsumer;
+
+/**
+ * Counts the booked units of a single room per night. Nights are epoch days, and ranges are [from, to).
+ * All methods are atomic. This does not enforce capacity, the room_nights counters do (see {@link AvailabilityService}).
+ */
+class RoomCalendar {
+    private final NavigableMap<Long, Integer> bookedUnits = new TreeMap<>();
+
+    synchronized boolean isFree(long from, long to, int capacity) {
+        for (long night = from; night < to; night++) {
+            if (bookedUnits.getOrDefault(night, 0) >= capacity) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Books the nights regardless of capacity.
+     */
+    synchronized void book(long from, long to) {
+        for (long night = from; night < to; night++) {
+            bookedUnits.merge(night, 1, Integer::sum);
+        }
+    }
+
+    synchronized void release(long from, long to) {
+        for (long night = from; night < to; night++) {
+            bookedUnits.computeIfPresent(night, (n, units) -> units > 1 ? units - 1 : null);
+        }
+    }
+
+    synchronized int bookedUnits(long night) {
+        return bookedUnits.getOrDefault(night, 0);
+    }
+
+    synchronized void forEachNight(BiConsumer<Long, Integer> action) {
+        bookedUnits.forEach(action);
+    }
+
+    /**
+     * Forgets the nights before the given night.
+     */
+    synchronized void dropBefore(long night) {
+        bookedUnits.headMap(night).clear();
+    }
+}
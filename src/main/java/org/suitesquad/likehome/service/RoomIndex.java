@@ -0,0 +1,368 @@
+package org.suitesquad.likehome.service;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.suitesquad.likehome.model.Room;
+
+import java.util.*;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+import static org.apache.commons.lang3.StringUtils.isBlank;
+
+/**
+ * In-memory index of the rooms of all hotels, for filtering them by their attributes without querying the database.
+ * Loaded at startup and updated on every {@link CatalogChangedEvent} for rooms. Rooms written by other instances
+ * are only seen through change streams (likehome.cache.change-streams), so without them the index is reloaded as
+ * often as the caches expire.
+ * <p>
+ * Each attribute is stored as a column (a primitive array with a row per room) and rooms are grouped by hotel, so a
+ * hotel's rooms are a range of rows. A filter is applied one column at a time over 64 rows at once, clearing the
+ * bits of the rows that don't match, which only allocates the bitset and runs tight loops over primitive arrays
+ * that the JIT can unroll and vectorize. Name filters are only checked on the rows left by the other filters.
+ * <p>
+ * The columns are never modified: every change builds new ones and swaps them in, so readers don't lock. A change
+ * to a single room copies the columns around its row, without sorting them again.
+ */
+@Service
+public class RoomIndex {
+    /**
+     * Rows are grouped by hotel, and a hotel's rooms are in insertion order, as ObjectIds sort by creation time.
+     */
+    private static final Comparator<Room> ROW_ORDER = Comparator.comparing(RoomIndex::hotelKey)
+            .thenComparing(room -> Objects.toString(room.getId(), ""));
+
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Value("${likehome.cache.change-streams}")
+    private boolean changeStreams;
+
+    private volatile Columns columns = new Columns(List.of());
+
+    /**
+     * Filters on room attributes. Rooms must match all of them.
+     *
+     * @param name     contained in the room name, ignoring case, or blank for any name
+     * @param maxPrice maximum price per night, or {@link Double#POSITIVE_INFINITY} for any price
+     */
+    public record Filter(String name, int minBaths, int minBeds, int minGuests, int minBedrooms,
+                         double minPrice, double maxPrice) {
+        public static final Filter NONE = new Filter(null, 0, 0, 0, 0, 0, Double.POSITIVE_INFINITY);
+    }
+
+    @PostConstruct
+    public void load() {
+        index(mongoTemplate.findAll(Room.class));
+    }
+
+    /**
+     * Reloads the rooms unless change streams keep the index up to date. Changes made by this instance while the
+     * rooms are reloaded may be missed until the next reload.
+     */
+    @Scheduled(fixedDelayString = "${likehome.cache.expire-after-write}",
+            initialDelayString = "${likehome.cache.expire-after-write}")
+    public void reload() {
+        if (!changeStreams) {
+            load();
+        }
+    }
+
+    /**
+     * Replaces the indexed rooms.
+     */
+    public synchronized void index(Collection<Room> rooms) {
+        columns = new Columns(rooms);
+    }
+
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE) // before CatalogVersionService hands out the new version
+    public void onCatalogChanged(CatalogChangedEvent event) {
+        if (!CatalogChangedEvent.ROOMS.equals(event.collection())) {
+            return;
+        }
+        if (event.id() == null) {
+            load();
+            return;
+        }
+        update(event.id(), event.hotelId(), mongoTemplate.findById(event.id(), Room.class));
+    }
+
+    /**
+     * Replaces or removes a single room.
+     *
+     * @param hotelId the hotel the room belonged to, or null if unknown
+     * @param room    the room as it is now, or null if it was deleted
+     */
+    synchronized void update(String roomId, String hotelId, Room room) {
+        Columns updated = columns;
+        int row = updated.rowOf(roomId, hotelId);
+        if (row >= 0) {
+            updated = updated.without(row);
+        }
+        if (room != null) {
+            updated = updated.with(room);
+        }
+        columns = updated;
+    }
+
+    /**
+     * The rooms matching a filter, in the order they were added unless sorted by price.
+     *
+     * @param hotelId     only rooms of this hotel, or null for the rooms of all hotels
+     * @param sortByPrice sort by price per night, lowest first
+     * @param limit       the maximum number of rooms, or null for all of them
+     */
+    public List<Room> find(String hotelId, Filter filter, boolean sortByPrice, Integer limit) {
+        if (limit != null && limit <= 0) {
+            throw new IllegalArgumentException("Limit must be positive");
+        }
+        Stream<Room> rooms = stream(hotelId, filter, sortByPrice);
+        return (limit == null ? rooms : rooms.limit(limit)).toList();
+    }
+
+    /**
+     * The rooms matching a filter, as {@link #find} without a limit. Rooms are looked up as they are consumed,
+     * except for a single hotel's rooms sorted by price, so a stream cut short only costs the rooms it consumed.
+     */
+    public Stream<Room> stream(String hotelId, Filter filter, boolean sortByPrice) {
+        Columns columns = this.columns;
+        int from = hotelId == null ? 0 : columns.hotelBound(hotelId, false);
+        int to = hotelId == null ? columns.rooms.length : columns.hotelBound(hotelId, true);
+        long[] matches = columns.match(filter, from, to);
+
+        if (sortByPrice && hotelId == null) { // the matches in price order
+            return Arrays.stream(columns.byPrice)
+                    .filter(row -> (matches[row >>> 6] & (1L << row)) != 0)
+                    .mapToObj(row -> columns.rooms[row]);
+        }
+        Stream<Room> rooms = BitSet.valueOf(matches).stream().mapToObj(bit -> columns.rooms[from + bit]);
+        return sortByPrice ? rooms.sorted(Comparator.comparingDouble(Room::getPricePerNight)) : rooms;
+    }
+
+    /**
+     * The number of indexed rooms.
+     */
+    public int size() {
+        return columns.rooms.length;
+    }
+
+    private static String hotelKey(Room room) {
+        return Objects.toString(room.getHotelId(), "");
+    }
+
+    private static final class Columns {
+        final Room[] rooms;
+        final String[] names;
+        final int[] baths;
+        final int[] beds;
+        final int[] guests;
+        final int[] bedrooms;
+        final double[] prices;
+        /**
+         * The rows in order of price per night.
+         */
+        final int[] byPrice;
+
+        Columns(Collection<Room> rooms) {
+            this(rooms.size());
+            Room[] sorted = rooms.toArray(Room[]::new);
+            Arrays.sort(sorted, ROW_ORDER);
+            for (int row = 0; row < sorted.length; row++) {
+                set(row, sorted[row]);
+            }
+            int[] order = IntStream.range(0, sorted.length).boxed()
+                    .sorted(Comparator.comparingDouble(row -> prices[row]))
+                    .mapToInt(Integer::intValue)
+                    .toArray();
+            System.arraycopy(order, 0, byPrice, 0, order.length);
+        }
+
+        private Columns(int n) {
+            rooms = new Room[n];
+            names = new String[n];
+            baths = new int[n];
+            beds = new int[n];
+            guests = new int[n];
+            bedrooms = new int[n];
+            prices = new double[n];
+            byPrice = new int[n];
+        }
+
+        private void set(int row, Room room) {
+            rooms[row] = room;
+            names[row] = normalize(room.getName());
+            baths[row] = room.getBaths();
+            beds[row] = room.getBeds();
+            guests[row] = room.getGuests();
+            bedrooms[row] = room.getBedrooms();
+            prices[row] = room.getPricePerNight();
+        }
+
+        /**
+         * A copy without the row, in linear time.
+         */
+        Columns without(int row) {
+            var copy = new Columns(rooms.length - 1);
+            copyRows(this, 0, copy, 0, row);
+            copyRows(this, row + 1, copy, row, rooms.length - row - 1);
+            int i = 0;
+            for (int priced : byPrice) {
+                if (priced != row) {
+                    copy.byPrice[i++] = priced > row ? priced - 1 : priced;
+                }
+            }
+            return copy;
+        }
+
+        /**
+         * A copy with a room that isn't indexed yet, in linear time.
+         */
+        Columns with(Room room) {
+            int found = Arrays.binarySearch(rooms, room, ROW_ORDER);
+            int row = found >= 0 ? found : -found - 1;
+            var copy = new Columns(rooms.length + 1);
+            copyRows(this, 0, copy, 0, row);
+            copy.set(row, room);
+            copyRows(this, row, copy, row + 1, rooms.length - row);
+            // rooms with the same price stay in row order, as after a full build
+            int i = 0;
+            boolean placed = false;
+            for (int priced : byPrice) {
+                if (!placed && (prices[priced] > room.getPricePerNight()
+                                || prices[priced] == room.getPricePerNight() && priced >= row)) {
+                    copy.byPrice[i++] = row;
+                    placed = true;
+                }
+                copy.byPrice[i++] = priced >= row ? priced + 1 : priced;
+            }
+            if (!placed) {
+                copy.byPrice[i] = row;
+            }
+            return copy;
+        }
+
+        private static void copyRows(Columns from, int fromRow, Columns to, int toRow, int count) {
+            System.arraycopy(from.rooms, fromRow, to.rooms, toRow, count);
+            System.arraycopy(from.names, fromRow, to.names, toRow, count);
+            System.arraycopy(from.baths, fromRow, to.baths, toRow, count);
+            System.arraycopy(from.beds, fromRow, to.beds, toRow, count);
+            System.arraycopy(from.guests, fromRow, to.guests, toRow, count);
+            System.arraycopy(from.bedrooms, fromRow, to.bedrooms, toRow, count);
+            System.arraycopy(from.prices, fromRow, to.prices, toRow, count);
+        }
+
+        /**
+         * The first row of the hotel's rooms, or the row after them if after.
+         */
+        int hotelBound(String hotelId, boolean after) {
+            int low = 0, high = rooms.length;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                int comparison = hotelKey(rooms[middle]).compareTo(hotelId);
+                if (comparison < 0 || after && comparison == 0) {
+                    low = middle + 1;
+                } else {
+                    high = middle;
+                }
+            }
+            return low;
+        }
+
+        /**
+         * The row of a room, or -1 if it isn't indexed.
+         *
+         * @param hotelId the hotel the room belongs to, or null to look among all rooms
+         */
+        int rowOf(String roomId, String hotelId) {
+            int from = hotelId == null ? 0 : hotelBound(hotelId, false);
+            int to = hotelId == null ? rooms.length : hotelBound(hotelId, true);
+            for (int row = from; row < to; row++) {
+                if (roomId.equals(rooms[row].getId())) {
+                    return row;
+                }
+            }
+            return -1;
+        }
+
+        /**
+         * The rows from (inclusive) to to (exclusive) matching the filter, as a bitset where bit i is row from + i.
+         */
+        long[] match(Filter filter, int from, int to) {
+            int count = to - from;
+            long[] words = new long[(count + 63) >>> 6];
+            Arrays.fill(words, -1L);
+            if (count % 64 != 0) {
+                words[words.length - 1] = -1L >>> (64 - count % 64);
+            }
+            if (filter.minBaths() > 0) {
+                retainAtLeast(words, baths, from, to, filter.minBaths());
+            }
+            if (filter.minBeds() > 0) {
+                retainAtLeast(words, beds, from, to, filter.minBeds());
+            }
+            if (filter.minGuests() > 0) {
+                retainAtLeast(words, guests, from, to, filter.minGuests());
+            }
+            if (filter.minBedrooms() > 0) {
+                retainAtLeast(words, bedrooms, from, to, filter.minBedrooms());
+            }
+            if (filter.minPrice() > 0 || filter.maxPrice() < Double.POSITIVE_INFINITY) {
+                retainBetween(words, prices, from, to, filter.minPrice(), filter.maxPrice());
+            }
+            if (!isBlank(filter.name())) {
+                String name = normalize(filter.name());
+                for (int w = 0; w < words.length; w++) {
+                    for (long bits = words[w]; bits != 0; bits &= bits - 1) {
+                        int bit = Long.numberOfTrailingZeros(bits);
+                        if (!names[from + (w << 6) + bit].contains(name)) {
+                            words[w] &= ~(1L << bit);
+                        }
+                    }
+                }
+            }
+            return words;
+        }
+
+        private static void retainAtLeast(long[] words, int[] column, int from, int to, int min) {
+            for (int w = 0; w < words.length; w++) {
+                if (words[w] == 0) {
+                    continue;
+                }
+                int base = from + (w << 6);
+                int end = Math.min(64, to - base);
+                long bits = 0;
+                for (int b = 0; b < end; b++) {
+                    bits |= (column[base + b] >= min ? 1L : 0L) << b;
+                }
+                words[w] &= bits;
+            }
+        }
+
+        private static void retainBetween(long[] words, double[] column, int from, int to, double min, double max) {
+            for (int w = 0; w < words.length; w++) {
+                if (words[w] == 0) {
+                    continue;
+                }
+                int base = from + (w << 6);
+                int end = Math.min(64, to - base);
+                long bits = 0;
+                for (int b = 0; b < end; b++) {
+                    double value = column[base + b];
+                    bits |= (value >= min & value <= max ? 1L : 0L) << b;
+                }
+                words[w] &= bits;
+            }
+        }
+
+        private static String normalize(String text) {
+            return text == null ? "" : text.toLowerCase(Locale.ROOT);
+        }
+    }
+}
@@ -1,27 +1,92 @@
 package org.suitesquad.likehome.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.cache.annotation.Cacheable;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
 import org.springframework.stereotype.Service;
 import org.suitesquad.likehome.model.Room;
 import org.suitesquad.likehome.repository.RoomRepository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.stream.Collectors;
 
 @Service
 public class RoomService {
     @Autowired
     private RoomRepository roomRepo;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Autowired
+    private CacheManager cacheManager;
+
+    public void addRoomData(Room roomDetails) {
+        roomRepo.insert(roomDetails);
+        eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.ROOMS, roomDetails.getId(),
+                roomDetails.getHotelId()));
+    }
+
+    public void addMultipleRoomData(List<Room> roomDetails) {
+        roomRepo.insert(roomDetails);
+        eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.ROOMS, null));
+    }
+
+    public void deleteRoomData(Room roomDetails) {
+        roomRepo.delete(roomDetails);
+        eventPublisher.publishEvent(new CatalogChangedEvent(CatalogChangedEvent.ROOMS, roomDetails.getId(),
+                roomDetails.getHotelId()));
+    }
 
     public List<Room> fetchAllRooms() {
         return roomRepo.findAll();
     }
 
-    public List<Room> findByHotelId(String hotelId) {
-        return roomRepo.findByHotelId(hotelId);
+    public List<Room> findByHotelIds(Collection<String> hotelIds) {
+        return mongoTemplate.find(new Query(Criteria.where("hotelId").in(hotelIds)), Room.class);
+    }
+
+    /**
+     * Fetches the room IDs of several hotels in a single query, projecting only {@code _id} and {@code hotelId}.
+     * Hotels without rooms are absent from the returned map.
+     */
+    public Map<String, List<String>> findIdsByHotelIds(Collection<String> hotelIds) {
+        var query = new Query(Criteria.where("hotelId").in(hotelIds));
+        query.fields().include("_id", "hotelId");
+
+        return mongoTemplate.find(query, Room.class).stream()
+                .collect(Collectors.groupingBy(Room::getHotelId,
+                        Collectors.mapping(Room::getId, Collectors.toList())));
     }
 
+    @Cacheable(cacheNames = "room", unless = "#result == null")
     public Optional<Room> findById(String id) {
         return roomRepo.findById(id);
     }
+
+    /**
+     * Fetches only some fields of a room (and its ID), or the whole room if it's cached.
+     */
+    public Optional<Room> findById(String id, String... fields) {
+        Room cached = roomCache().get(id, Room.class);
+        if (cached != null) {
+            return Optional.of(cached);
+        }
+        var query = new Query(Criteria.where("_id").is(id));
+        query.fields().include(fields);
+        return Optional.ofNullable(mongoTemplate.findOne(query, Room.class));
+    }
+
+    private Cache roomCache() {
+        return Objects.requireNonNull(cacheManager.getCache("room"));
+    }
 }
\ No newline at end of file
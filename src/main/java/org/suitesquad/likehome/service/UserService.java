@@ -1,20 +1,36 @@
 package org.suitesquad.likehome.service;
 
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.mongodb.core.FindAndModifyOptions;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
 import org.springframework.stereotype.Service;
 import org.suitesquad.likehome.model.User;
 import org.suitesquad.likehome.repository.UserRepository;
 
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 
 @Service
 public class UserService {
     @Autowired
     private UserRepository userRepo;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+    @Autowired
+    private CacheManager cacheManager;
 
     public void addUserData(User userDetails) {
         userRepo.insert(userDetails);
+        firstNameCache().evict(userDetails.getId());
     }
 
     public void addMultipleUserData(List<User> userDetail) {
@@ -27,10 +43,12 @@ public class UserService {
 
     public void deleteUserData(User userDetails) {
         userRepo.delete(userDetails);
+        firstNameCache().evict(userDetails.getId());
     }
 
     public void deleteAllUserData() {
         userRepo.deleteAll();
+        firstNameCache().clear();
     }
 
     public List<User> findByEmail(String email) {
@@ -41,11 +59,67 @@ public class UserService {
         return userRepo.findById(id);
     }
 
-    public void updateUserPoints(String id, int points) {
-        userRepo.findById(id).ifPresent(user -> {
-            user.setRewardPoints(points);
-            userRepo.save(user);
-        });
+    /**
+     * Checks that a user exists without fetching it, answered from the _id index alone.
+     */
+    public boolean existsById(String id) {
+        return mongoTemplate.exists(new Query(Criteria.where("_id").is(id)), User.class);
+    }
+
+    /**
+     * Gets the first names of several users. Names are cached, and the missing ones are fetched in a single query
+     * projecting only {@code firstName}. Unknown users are absent from the returned map.
+     */
+    public Map<String, String> findFirstNames(Collection<String> ids) {
+        Cache cache = firstNameCache();
+        var firstNames = new HashMap<String, String>();
+        var missing = ids.stream()
+                .filter(Objects::nonNull)
+                .distinct()
+                .filter(id -> {
+                    String firstName = cache.get(id, String.class);
+                    if (firstName != null) {
+                        firstNames.put(id, firstName);
+                    }
+                    return firstName == null;
+                })
+                .toList();
+
+        if (!missing.isEmpty()) {
+            var query = new Query(Criteria.where("_id").in(missing));
+            query.fields().include("firstName");
+            for (User user : mongoTemplate.find(query, User.class)) {
+                if (user.getFirstName() != null) {
+                    firstNames.put(user.getId(), user.getFirstName());
+                    cache.put(user.getId(), user.getFirstName());
+                }
+            }
+        }
+        return firstNames;
+    }
+
+    private Cache firstNameCache() {
+        return Objects.requireNonNull(cacheManager.getCache("userFirstNames"));
+    }
+
+    /**
+     * Atomically adds reward points to a user. The balance may become negative.
+     */
+    public void addRewardPoints(String id, int points) {
+        mongoTemplate.updateFirst(new Query(Criteria.where("_id").is(id)),
+                new Update().inc("rewardPoints", points), User.class);
+    }
 
+    /**
+     * Atomically removes reward points from a user, only if the user has enough of them.
+     *
+     * @return the updated user, or empty if the user does not exist or does not have enough points
+     */
+    public Optional<User> spendRewardPoints(String id, int points) {
+        return Optional.ofNullable(mongoTemplate.findAndModify(
+                new Query(Criteria.where("_id").is(id).and("rewardPoints").gte(points)),
+                new Update().inc("rewardPoints", -points),
+                FindAndModifyOptions.options().returnNew(true),
+                User.class));
     }
 }
\ No newline at end of file
@@ -0,0 +1,47 @@
+package org.suitesquad.likehome;
+
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.springframework.test.context.DynamicPropertyRegistry;
+
+import static org.junit.jupiter.api.Assumptions.assumeTrue;
+
+/**
+ * An embedded MongoDB for the Spring Boot tests, started once per test run, so they need no DB_URL and never write
+ * to a real database. MongoDB is downloaded on first use. Tests using it are skipped if it can't be started
+ * (e.g. offline before the first download).
+ * <p>
+ * Set test.mongoUrl to use an already running MongoDB instead. Its likehome_test database is written to.
+ * <p>
+ * Use it from a {@code @BeforeAll} method, {@code EmbeddedMongo.assumeRunning()}, and a
+ * {@code @DynamicPropertySource} method, {@code EmbeddedMongo.register(registry)}.
+ */
+public final class EmbeddedMongo {
+    private static String url = System.getProperty("test.mongoUrl");
+    private static RuntimeException failure;
+
+    private EmbeddedMongo() {}
+
+    /**
+     * Starts MongoDB if needed, and skips the calling tests if it can't be started.
+     */
+    public static synchronized void assumeRunning() {
+        if (url == null && failure == null) {
+            try {
+                TransitionWalker.ReachedState<RunningMongodProcess> mongod = Mongod.instance().start(Version.Main.V7_0);
+                Runtime.getRuntime().addShutdownHook(new Thread(mongod::close));
+                url = "mongodb://" + mongod.current().getServerAddress();
+            } catch (RuntimeException e) {
+                failure = e;
+            }
+        }
+        assumeTrue(url != null, () -> "MongoDB could not be started: " + failure);
+    }
+
+    public static void register(DynamicPropertyRegistry registry) {
+        registry.add("spring.data.mongodb.uri", () -> url);
+        registry.add("spring.data.mongodb.database", () -> "likehome_test");
+    }
+}
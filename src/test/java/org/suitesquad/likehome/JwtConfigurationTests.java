@@ -0,0 +1,111 @@
+package org.suitesquad.likehome;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.JwtDecoder;
+import org.springframework.security.oauth2.jwt.JwtException;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class JwtConfigurationTests {
+    private static final String ISSUER = "https://issuer.example.com";
+    private static final String AUDIENCE = "likehome-test";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final RSAKey key = new RSAKeyGenerator(2048).keyID("test").generate();
+    private String jwkSetFile;
+
+    @TempDir
+    private Path dir;
+
+    JwtConfigurationTests() throws JOSEException {}
+
+    @BeforeEach
+    void writeJwkSetFile() throws IOException {
+        Path file = dir.resolve("jwks.json");
+        Files.writeString(file, new JWKSet(key.toPublicJWK()).toString());
+        jwkSetFile = file.toString();
+    }
+
+    @Test
+    void verifiesWithFileKeysAndCachesTokens() throws JOSEException {
+        JwtDecoder decoder = decoder("");
+        String token = token(AUDIENCE);
+        assertEquals("user-1", decoder.decode(token).getSubject());
+        assertEquals("user-1", decoder.decode(token).getSubject());
+        assertEquals(1, count("miss", "valid"));
+        assertEquals(1, count("hit", "valid"));
+    }
+
+    @Test
+    void fallsBackToFileKeysWhenTheJwkSetCannotBeFetched() throws JOSEException {
+        assertEquals("user-1", decoder("http://localhost:1/jwks").decode(token(AUDIENCE)).getSubject());
+    }
+
+    @Test
+    void rejectsOtherAudiencesEveryTime() throws JOSEException {
+        JwtDecoder decoder = decoder("");
+        String token = token("someone-else");
+        assertThrows(JwtException.class, () -> decoder.decode(token));
+        assertThrows(JwtException.class, () -> decoder.decode(token));
+        assertEquals(2, count("miss", "invalid"));
+    }
+
+    @Test
+    void doesNotCacheExpiredTokens() {
+        var decodes = new AtomicInteger();
+        var decoder = new CachingJwtDecoder(token -> {
+            decodes.incrementAndGet();
+            return Jwt.withTokenValue(token).header("alg", "RS256").subject("user-1")
+                    .issuedAt(Instant.now().minusSeconds(120)).expiresAt(Instant.now().minusSeconds(30)).build();
+        }, registry, 10, Duration.ofMinutes(10));
+        decoder.decode("token");
+        decoder.decode("token");
+        assertEquals(2, decodes.get());
+    }
+
+    private JwtDecoder decoder(String jwkSetUri) {
+        return new JwtConfiguration().jwtDecoder(registry, jwkSetUri, ISSUER, List.of(AUDIENCE), jwkSetFile,
+                3600, 100, 600);
+    }
+
+    private long count(String cache, String outcome) {
+        return registry.get("likehome.jwt.decode").tag("cache", cache).tag("outcome", outcome).timer().count();
+    }
+
+    private String token(String audience) throws JOSEException {
+        Instant now = Instant.now();
+        var claims = new JWTClaimsSet.Builder()
+                .subject("user-1")
+                .issuer(ISSUER)
+                .audience(audience)
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(Duration.ofHours(1))))
+                .build();
+        var jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        jwt.sign(new RSASSASigner(key));
+        return jwt.serialize();
+    }
+}
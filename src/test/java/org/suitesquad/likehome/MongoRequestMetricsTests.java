@@ -0,0 +1,113 @@
+package org.suitesquad.likehome;
+
+import com.mongodb.ServerAddress;
+import com.mongodb.connection.ClusterId;
+import com.mongodb.connection.ConnectionDescription;
+import com.mongodb.connection.ServerId;
+import com.mongodb.event.CommandStartedEvent;
+import com.mongodb.event.CommandSucceededEvent;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.bson.BsonArray;
+import org.bson.BsonDocument;
+import org.bson.BsonInt64;
+import org.bson.BsonString;
+import org.bson.BsonValue;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class MongoRequestMetricsTests {
+    private static final ConnectionDescription CONNECTION =
+            new ConnectionDescription(new ServerId(new ClusterId(), new ServerAddress()));
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final MockHttpServletRequest request = new MockHttpServletRequest("GET", "/hotels/1/rooms");
+    private final MockHttpServletResponse response = new MockHttpServletResponse();
+
+    MongoRequestMetricsTests() {
+        request.setAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE, "/hotels/{hotelId}/rooms");
+    }
+
+    @Test
+    void countsRoundTripsAndDocumentsPerCollection() {
+        var metrics = new MongoRequestMetrics(registry, 10, 1000, false);
+        metrics.preHandle(request, response, new Object());
+        find(metrics, "hotels", 1);
+        find(metrics, "rooms", 101);
+        metrics.commandStarted(started("getMore", new BsonInt64(1), "rooms"));
+        metrics.commandSucceeded(succeeded("getMore", cursor("nextBatch", 20)));
+        metrics.afterCompletion(request, response, new Object(), null);
+
+        assertEquals(1, roundTrips("hotels").totalAmount());
+        assertEquals(2, roundTrips("rooms").totalAmount());
+        assertEquals(1, roundTrips("rooms").count());
+        assertEquals(122, registry.get("likehome.mongo.documents").summary().totalAmount());
+        assertNull(registry.find("likehome.mongo.query.budget.exceeded").counter());
+    }
+
+    @Test
+    void ignoresCommandsOutsideRequests() {
+        var metrics = new MongoRequestMetrics(registry, 10, 1000, false);
+        find(metrics, "hotels", 1);
+        assertNull(registry.find("likehome.mongo.round.trips").summary());
+    }
+
+    @Test
+    void countsRequestsOverBudget() {
+        var metrics = new MongoRequestMetrics(registry, 2, 1000, false);
+        metrics.preHandle(request, response, new Object());
+        for (int i = 0; i < 3; i++) {
+            find(metrics, "hotels", 1);
+        }
+        metrics.afterCompletion(request, response, new Object(), null);
+
+        assertEquals(1, registry.get("likehome.mongo.query.budget.exceeded")
+                .tag("uri", "/hotels/{hotelId}/rooms").counter().count());
+    }
+
+    @Test
+    void strictModeRecordsRequestsOverBudget() {
+        var metrics = new MongoRequestMetrics(registry, 10, 100, true);
+        metrics.preHandle(request, response, new Object());
+        find(metrics, "rooms", 101);
+        metrics.afterCompletion(request, response, new Object(), null);
+
+        assertEquals(1, metrics.violations().size());
+        assertTrue(metrics.violations().getFirst().startsWith("GET /hotels/{hotelId}/rooms exceeded"));
+    }
+
+    private DistributionSummary roundTrips(String collection) {
+        return registry.get("likehome.mongo.round.trips")
+                .tag("uri", "/hotels/{hotelId}/rooms")
+                .tag("collection", collection)
+                .summary();
+    }
+
+    private static void find(MongoRequestMetrics metrics, String collection, int documents) {
+        metrics.commandStarted(started("find", new BsonString(collection), null));
+        metrics.commandSucceeded(succeeded("find", cursor("firstBatch", documents)));
+    }
+
+    private static BsonDocument cursor(String batch, int documents) {
+        var array = new BsonArray(Collections.nCopies(documents, new BsonDocument()));
+        return new BsonDocument("cursor", new BsonDocument(batch, array));
+    }
+
+    private static CommandStartedEvent started(String name, BsonValue value, String collection) {
+        var command = new BsonDocument(name, value);
+        if (collection != null) {
+            command.append("collection", new BsonString(collection));
+        }
+        return new CommandStartedEvent(null, 1, 1, CONNECTION, "likehome", name, command);
+    }
+
+    private static CommandSucceededEvent succeeded(String name, BsonDocument response) {
+        return new CommandSucceededEvent(null, 1, 1, CONNECTION, "likehome", name, response, 1000);
+    }
+}
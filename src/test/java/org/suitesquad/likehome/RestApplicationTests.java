@@ -1,20 +1,59 @@
 package org.suitesquad.likehome;
 
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.AutoConfigureMockMvc;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.springframework.http.MediaType;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
 import org.springframework.test.web.servlet.MockMvc;
+import org.suitesquad.likehome.model.Hotel;
+import org.suitesquad.likehome.model.Review;
+import org.suitesquad.likehome.model.Room;
+import org.suitesquad.likehome.rest.PublicController;
 
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.hamcrest.Matchers.closeTo;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.springframework.security.test.web.servlet.request.SecurityMockMvcRequestPostProcessors.jwt;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
-@SpringBootTest
+@SpringBootTest(properties = "likehome.mongo.query-budget.strict=true")
 @AutoConfigureMockMvc
 class RestApplicationTests {
 
     @Autowired
     private MockMvc mockMvc;
+    @Autowired
+    private MongoRequestMetrics mongoRequestMetrics;
+    @Autowired
+    private MongoTemplate mongoTemplate;
+
+    @BeforeAll
+    static void startMongo() {
+        EmbeddedMongo.assumeRunning();
+    }
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        EmbeddedMongo.register(registry);
+    }
+
+    @AfterEach
+    void withinQueryBudget() {
+        assertEquals(List.of(), mongoRequestMetrics.violations());
+    }
 
     @Test
     void contextLoads() {
@@ -34,4 +73,127 @@ class RestApplicationTests {
                 .andExpect(jsonPath("$").isArray())
         ;
     }
+
+    @Test
+    void hotelsDefaultToJson() throws Exception {
+        mockMvc.perform(get("/hotels").accept(MediaType.ALL))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+        mockMvc.perform(get("/hotels").header("Accept", "application/json, text/plain, */*"))
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void hotelsStreamOnlyWhenAsked() throws Exception {
+        mockMvc.perform(get("/hotels").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isOk())
+                .andExpect(request().asyncStarted());
+        mockMvc.perform(get("/hotels").param("guests", "2").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isBadRequest());
+        mockMvc.perform(get("/hotels").param("limit", "501").accept(MediaType.APPLICATION_NDJSON))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void hotelsNear() throws Exception {
+        var location = new Hotel.Location();
+        location.setCity("Ushuaia");
+        location.setCoordinates(new GeoJsonPoint(-68.30, -54.80));
+        var hotel = new Hotel();
+        hotel.setId("near-test-" + UUID.randomUUID());
+        hotel.setName("Fin del Mundo");
+        hotel.setLocation(location);
+        mongoTemplate.insert(hotel);
+        try {
+            mockMvc.perform(get("/hotels/near").param("lat", "-54.81").param("lng", "-68.30").param("radiusKm", "5"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(1))
+                    .andExpect(jsonPath("$[0].hotel.id").value(hotel.getId()))
+                    .andExpect(jsonPath("$[0].distanceKm").value(closeTo(1.1, 0.1)));
+        } finally {
+            mongoTemplate.remove(hotel);
+        }
+    }
+
+    @Test
+    void availabilityFiltersFillPages() throws Exception {
+        String name = "paging-test-" + UUID.randomUUID();
+        List<Hotel> hotels = IntStream.range(0, 6).mapToObj(i -> {
+            var hotel = new Hotel();
+            hotel.setId(name + "-" + i);
+            hotel.setName(name);
+            hotel.setLocation(new Hotel.Location());
+            return hotel;
+        }).toList();
+        mongoTemplate.insertAll(hotels);
+        var room = new Room();
+        room.setHotelId(hotels.get(1).getId());
+        room.setGuests(4);
+        mongoTemplate.insert(room);
+        try {
+            mockMvc.perform(get("/hotels").param("name", name).param("guests", "2").param("limit", "1"))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$[*].id").value(hotels.get(1).getId()))
+                    .andExpect(header().doesNotExist(PublicController.NEXT_AFTER));
+            mockMvc.perform(get("/hotels").param("name", name).param("guests", "2").param("limit", "1")
+                            .param("after", hotels.get(1).getId()))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(0))
+                    .andExpect(header().string(PublicController.NEXT_AFTER, hotels.get(5).getId()));
+        } finally {
+            hotels.forEach(mongoTemplate::remove);
+            mongoTemplate.remove(room);
+        }
+    }
+
+    @Test
+    void reviewsArePaged() throws Exception {
+        var hotel = new Hotel();
+        hotel.setId("reviews-test-" + UUID.randomUUID());
+        mongoTemplate.insert(hotel);
+        List<Review> reviews = IntStream.range(0, 51).mapToObj(i -> {
+            var review = new Review();
+            review.setHotelId(hotel.getId());
+            review.setRating(5);
+            review.setReviewDate(new Date(i));
+            return review;
+        }).toList();
+        mongoTemplate.insertAll(reviews);
+        String path = "/hotels/" + hotel.getId() + "/reviews";
+        try {
+            mockMvc.perform(get(path))
+                    .andExpect(status().isOk())
+                    .andExpect(jsonPath("$.length()").value(50));
+            mockMvc.perform(get(path).param("limit", "501"))
+                    .andExpect(status().isBadRequest());
+            mockMvc.perform(get(path).param("limit", "501").accept(MediaType.APPLICATION_NDJSON))
+                    .andExpect(status().isBadRequest());
+        } finally {
+            mongoTemplate.remove(hotel);
+            reviews.forEach(mongoTemplate::remove);
+        }
+    }
+
+    @Test
+    void roomSearchesArePaged() throws Exception {
+        mockMvc.perform(get("/rooms"))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/rooms").param("limit", "501"))
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    void adminRequiresAdminRole() throws Exception {
+        mockMvc.perform(get("/admin/caches"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/admin/caches").with(jwt()))
+                .andExpect(status().isForbidden());
+        mockMvc.perform(get("/admin/caches").with(jwt().authorities(new SimpleGrantedAuthority("ROLE_ADMIN"))))
+                .andExpect(status().isOk());
+        mockMvc.perform(get("/actuator/prometheus"))
+                .andExpect(status().isUnauthorized());
+        mockMvc.perform(get("/actuator/prometheus").with(jwt()))
+                .andExpect(status().isForbidden());
+    }
 }
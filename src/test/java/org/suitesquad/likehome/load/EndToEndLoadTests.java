@@ -0,0 +1,154 @@
+package org.suitesquad.likehome.load;
+
+import com.mongodb.client.MongoClients;
+import de.flapdoodle.embed.mongo.distribution.Version;
+import de.flapdoodle.embed.mongo.transitions.Mongod;
+import de.flapdoodle.embed.mongo.transitions.RunningMongodProcess;
+import de.flapdoodle.reverse.TransitionWalker;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.suitesquad.likehome.RestApplication;
+import org.suitesquad.likehome.load.LoadGenerator.Endpoint;
+import org.suitesquad.likehome.load.SyntheticData.Seed;
+import org.suitesquad.likehome.load.SyntheticData.UserItem;
+import org.suitesquad.likehome.model.Room;
+
+import java.net.URI;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.stream.Stream;
+
+/**
+ * Runs mixed browse, book, cancel and review traffic against the whole application, backed by an embedded
+ * MongoDB seeded with {@link SyntheticData} and authenticated with tokens from a {@link LocalJwtIssuer}.
+ * Needs no DB_URL or network access beyond downloading MongoDB once. Run with {@code ./gradlew loadTest}.
+ * <p>
+ * Set load.mongoUrl to use an already running MongoDB instead, e.g. {@code -Dload.mongoUrl=mongodb://localhost}.
+ * Its likehome_load database is dropped and reseeded.
+ * <p>
+ * Failed requests are counted as errors per endpoint. Some are expected: random bookings can hit a full room
+ * or an overlapping stay of the same user, and cancellations run out of reservations to cancel eventually.
+ */
+@Tag("load")
+class EndToEndLoadTests {
+    private static final String DATABASE = "likehome_load";
+
+    @Test
+    void mixedTraffic() throws Exception {
+        String mongoUrl = System.getProperty("load.mongoUrl");
+        TransitionWalker.ReachedState<RunningMongodProcess> mongod = null;
+        if (mongoUrl == null) {
+            mongod = Mongod.instance().start(Version.Main.V7_0);
+            mongoUrl = "mongodb://" + mongod.current().getServerAddress();
+        }
+        try (var issuer = new LocalJwtIssuer()) {
+            Seed seed;
+            try (var client = MongoClients.create(mongoUrl)) {
+                seed = new SyntheticData().seed(new MongoTemplate(client, DATABASE));
+            }
+
+            String[] args = Stream.concat(Stream.of(
+                    "--server.port=0",
+                    "--spring.data.mongodb.uri=" + mongoUrl,
+                    "--spring.data.mongodb.database=" + DATABASE
+            ), Stream.of(issuer.properties())).toArray(String[]::new);
+            try (var context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(RestApplication.class)
+                    .run(args)) {
+                String baseUrl = "http://localhost:" + context.getWebServer().getPort();
+                var results = new LoadGenerator().runAll("e2e", endpoints(baseUrl, seed, issuer));
+                System.out.println(LoadGenerator.report(results));
+            }
+        } finally {
+            if (mongod != null) {
+                mongod.close();
+            }
+        }
+    }
+
+    private static List<Endpoint> endpoints(String baseUrl, Seed seed, LocalJwtIssuer issuer) throws Exception {
+        // reservations that can be cancelled, seeded ones first, then the ones booked during the run
+        Queue<UserItem> cancellable = new ConcurrentLinkedQueue<>(seed.futureReservations());
+
+        var endpoints = new ArrayList<>(ThreadingModelLoadTests.publicEndpoints(baseUrl));
+        endpoints.add(new Endpoint("/hotels?checkIn&checkOut&guests", 2, () -> {
+            LocalDate checkIn = randomCheckIn();
+            return ThreadingModelLoadTests.get(baseUrl + "/hotels?limit=20&guests=2&checkIn=" + checkIn +
+                                               "&checkOut=" + checkIn.plusDays(2));
+        }));
+        endpoints.add(new Endpoint("/hotels/near", 2, () -> {
+            double[] city = SyntheticData.CITY_COORDINATES[
+                    ThreadLocalRandom.current().nextInt(SyntheticData.CITY_COORDINATES.length)];
+            return ThreadingModelLoadTests.get(baseUrl + "/hotels/near?limit=20&radiusKm=5&lat=" + city[0] +
+                                               "&lng=" + city[1]);
+        }));
+        endpoints.add(new Endpoint("GET /auth/reservations", 2, () ->
+                authorized(baseUrl + "/auth/reservations", issuer.token(any(seed.userIds()))).GET().build()));
+        endpoints.add(new Endpoint("POST /auth/reservations", 2, () -> {
+            String userId = any(seed.userIds());
+            Room room = any(seed.rooms());
+            LocalDate checkIn = randomCheckIn();
+            int nights = 1 + ThreadLocalRandom.current().nextInt(3);
+            String body = """
+                    {"roomId": "%s", "nights": %d, "checkIn": %d, "checkOut": %d,
+                     "payment": {"pointsUsed": 0, "paymentMethod": "Card", "paymentStatus": "Paid"}}"""
+                    .formatted(room.getId(), nights, SyntheticData.toDate(checkIn).getTime(),
+                            SyntheticData.toDate(checkIn.plusDays(nights)).getTime());
+            return authorized(baseUrl + "/auth/reservations", issuer.token(userId))
+                    .header("Content-Type", "application/json")
+                    .POST(HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }, response -> cancellable.add(new UserItem(userId(response, issuer), response.body()))));
+        endpoints.add(new Endpoint("DELETE /auth/reservations/{id}", 1, () -> {
+            UserItem reservation = cancellable.poll();
+            if (reservation == null) { // all cancelled, this one fails
+                reservation = any(seed.futureReservations());
+            }
+            return authorized(baseUrl + "/auth/reservations/" + reservation.itemId(), issuer.token(reservation.userId()))
+                    .DELETE().build();
+        }));
+        endpoints.add(new Endpoint("PATCH /auth/hotels/{id}/reviews", 1, () -> {
+            UserItem review = any(seed.reviews());
+            String body = """
+                    {"contents": "Updated by the load test", "rating": %d}"""
+                    .formatted(1 + ThreadLocalRandom.current().nextInt(5));
+            return authorized(baseUrl + "/auth/hotels/" + review.itemId() + "/reviews", issuer.token(review.userId()))
+                    .header("Content-Type", "application/json")
+                    .method("PATCH", HttpRequest.BodyPublishers.ofString(body))
+                    .build();
+        }));
+        return endpoints;
+    }
+
+    /**
+     * Bookings in the next year, before the seeded future reservations.
+     */
+    private static LocalDate randomCheckIn() {
+        return LocalDate.now(ZoneOffset.UTC).plusDays(1 + ThreadLocalRandom.current().nextInt(365));
+    }
+
+    private static HttpRequest.Builder authorized(String url, String token) {
+        return HttpRequest.newBuilder(URI.create(url)).header("Authorization", "Bearer " + token);
+    }
+
+    /**
+     * Finds the user a request was sent for from its token.
+     */
+    private static String userId(HttpResponse<String> response, LocalJwtIssuer issuer) {
+        String authorization = response.request().headers().firstValue("Authorization").orElseThrow();
+        return issuer.userId(authorization.substring("Bearer ".length()));
+    }
+
+    private static <T> T any(List<T> items) {
+        return items.get(ThreadLocalRandom.current().nextInt(items.size()));
+    }
+}
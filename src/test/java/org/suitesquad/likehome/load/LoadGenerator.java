@@ -0,0 +1,188 @@
+package org.suitesquad.likehome.load;
+
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * Closed-loop HTTP load generator. A fixed number of virtual threads send requests back to back for a fixed
+ * duration, each picking an endpoint at random by weight, and the latencies are recorded per endpoint.
+ * <p>
+ * Settings are read from system properties, passed through by the loadTest Gradle task:
+ * <ul>
+ *     <li>load.concurrency: comma-separated numbers of concurrent clients to run in turn (default 50,200,800)</li>
+ *     <li>load.seconds: how long to run each concurrency level (default 10)</li>
+ *     <li>load.warmupSeconds: how long to warm up before measuring (default 3)</li>
+ * </ul>
+ */
+public class LoadGenerator {
+
+    /**
+     * @param name    reported name, usually the route template
+     * @param weight  relative frequency of this endpoint
+     * @param request   creates the next request, called once per request
+     * @param onSuccess optional, receives every successful response, e.g. to remember created IDs
+     */
+    public record Endpoint(String name, int weight, Supplier<HttpRequest> request,
+                           Consumer<HttpResponse<String>> onSuccess) {
+        public Endpoint(String name, int weight, Supplier<HttpRequest> request) {
+            this(name, weight, request, null);
+        }
+    }
+
+    public record Result(String label, String endpoint, int concurrency, long requests, long errors,
+                         double throughput, double p50Ms, double p99Ms, double maxMs) {}
+
+    private final HttpClient client = HttpClient.newBuilder()
+            .executor(Executors.newVirtualThreadPerTaskExecutor())
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    public static int[] concurrencyLevels() {
+        return Arrays.stream(System.getProperty("load.concurrency", "50,200,800").split(","))
+                .mapToInt(level -> Integer.parseInt(level.trim()))
+                .toArray();
+    }
+
+    public static Duration duration() {
+        return Duration.ofSeconds(Long.getLong("load.seconds", 10));
+    }
+
+    public static Duration warmup() {
+        return Duration.ofSeconds(Long.getLong("load.warmupSeconds", 3));
+    }
+
+    /**
+     * Warms up, then runs every concurrency level.
+     *
+     * @param label reported with every result, e.g. the server configuration under test
+     */
+    public List<Result> runAll(String label, List<Endpoint> endpoints) throws InterruptedException {
+        run(label, endpoints, concurrencyLevels()[0], warmup());
+        var results = new ArrayList<Result>();
+        for (int concurrency : concurrencyLevels()) {
+            results.addAll(run(label, endpoints, concurrency, duration()));
+        }
+        return results;
+    }
+
+    public List<Result> run(String label, List<Endpoint> endpoints, int concurrency, Duration duration)
+            throws InterruptedException {
+        var recorders = new LinkedHashMap<Endpoint, Recorder>();
+        endpoints.forEach(endpoint -> recorders.put(endpoint, new Recorder()));
+        int totalWeight = endpoints.stream().mapToInt(Endpoint::weight).sum();
+        long start = System.nanoTime();
+        long deadline = start + duration.toNanos();
+
+        try (ExecutorService clients = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int i = 0; i < concurrency; i++) {
+                clients.submit(() -> {
+                    while (System.nanoTime() < deadline) {
+                        Endpoint endpoint = pick(endpoints, totalWeight);
+                        send(endpoint, recorders.get(endpoint));
+                    }
+                });
+            }
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        var results = new ArrayList<Result>();
+        for (Map.Entry<Endpoint, Recorder> entry : recorders.entrySet()) {
+            results.add(entry.getValue().result(label, entry.getKey().name(), concurrency, seconds));
+        }
+        return results;
+    }
+
+    private void send(Endpoint endpoint, Recorder recorder) {
+        long start = System.nanoTime();
+        try {
+            if (endpoint.onSuccess() == null) {
+                HttpResponse<Void> response = client.send(endpoint.request().get(), HttpResponse.BodyHandlers.discarding());
+                recorder.record(response.statusCode(), System.nanoTime() - start);
+                return;
+            }
+            HttpResponse<String> response = client.send(endpoint.request().get(), HttpResponse.BodyHandlers.ofString());
+            if (recorder.record(response.statusCode(), System.nanoTime() - start)) {
+                endpoint.onSuccess().accept(response);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (Exception e) {
+            recorder.errors.incrementAndGet();
+        }
+    }
+
+    private static Endpoint pick(List<Endpoint> endpoints, int totalWeight) {
+        int ticket = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Endpoint endpoint : endpoints) {
+            ticket -= endpoint.weight();
+            if (ticket < 0) {
+                return endpoint;
+            }
+        }
+        return endpoints.getLast();
+    }
+
+    public static String report(List<Result> results) {
+        var report = new StringBuilder(String.format("%-12s %-32s %6s %9s %7s %9s %9s %9s %9s%n",
+                "run", "endpoint", "conc", "requests", "errors", "req/s", "p50 ms", "p99 ms", "max ms"));
+        for (Result r : results) {
+            report.append(String.format("%-12s %-32s %6d %9d %7d %9.1f %9.2f %9.2f %9.2f%n",
+                    r.label(), r.endpoint(), r.concurrency(), r.requests(), r.errors(),
+                    r.throughput(), r.p50Ms(), r.p99Ms(), r.maxMs()));
+        }
+        return report.toString();
+    }
+
+    private static class Recorder {
+        private final AtomicLong errors = new AtomicLong();
+        private long[] latencies = new long[1024];
+        private int count;
+
+        /**
+         * @return whether the response was successful
+         */
+        boolean record(int statusCode, long nanos) {
+            if (statusCode >= 400) {
+                errors.incrementAndGet();
+                return false;
+            }
+            record(nanos);
+            return true;
+        }
+
+        synchronized void record(long nanos) {
+            if (count == latencies.length) {
+                latencies = Arrays.copyOf(latencies, count * 2);
+            }
+            latencies[count++] = nanos;
+        }
+
+        synchronized Result result(String label, String endpoint, int concurrency, double seconds) {
+            long[] sorted = Arrays.copyOf(latencies, count);
+            Arrays.sort(sorted);
+            return new Result(label, endpoint, concurrency, count, errors.get(), count / seconds,
+                    percentile(sorted, 0.50), percentile(sorted, 0.99),
+                    count == 0 ? 0 : sorted[count - 1] / 1e6);
+        }
+
+        private static double percentile(long[] sorted, double percentile) {
+            if (sorted.length == 0) {
+                return 0;
+            }
+            return sorted[(int) Math.min(sorted.length - 1, Math.ceil(percentile * sorted.length) - 1)] / 1e6;
+        }
+    }
+}
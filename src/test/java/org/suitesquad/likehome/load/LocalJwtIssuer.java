@@ -0,0 +1,105 @@
+package org.suitesquad.likehome.load;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Date;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Stands in for Google's token service in load tests: mints RS256 JWTs with a local key and serves the
+ * matching JWK set over HTTP, so the application verifies them exactly as it verifies real tokens.
+ * Start the application with {@link #properties()} to trust this issuer.
+ */
+public class LocalJwtIssuer implements AutoCloseable {
+    public static final String AUDIENCE = "likehome-load";
+
+    private final RSAKey key;
+    private final HttpServer server;
+    private final Map<String, String> tokens = new ConcurrentHashMap<>();
+    private final Map<String, String> subjects = new ConcurrentHashMap<>();
+
+    public LocalJwtIssuer() throws JOSEException, IOException {
+        key = new RSAKeyGenerator(2048).keyID("load").generate();
+        byte[] jwkSet = new JWKSet(key.toPublicJWK()).toString().getBytes(StandardCharsets.UTF_8);
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/jwks", exchange -> {
+            exchange.getResponseHeaders().set("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, jwkSet.length);
+            try (var body = exchange.getResponseBody()) {
+                body.write(jwkSet);
+            }
+        });
+        server.start();
+    }
+
+    public String issuer() {
+        return "http://localhost:" + server.getAddress().getPort();
+    }
+
+    /**
+     * Command line arguments for the application, replacing the Google issuer with this one.
+     */
+    public String[] properties() {
+        return new String[]{
+                "--spring.security.oauth2.resourceserver.jwt.jwk-set-uri=" + issuer() + "/jwks",
+                "--spring.security.oauth2.resourceserver.jwt.issuer-uri=" + issuer(),
+                "--spring.security.oauth2.resourceserver.jwt.audiences=" + AUDIENCE,
+        };
+    }
+
+    /**
+     * A token for the user, valid for a day. Tokens are reused per user, like a client would.
+     */
+    public String token(String userId) {
+        return tokens.computeIfAbsent(userId, id -> {
+            String token = mint(id);
+            subjects.put(token, id);
+            return token;
+        });
+    }
+
+    /**
+     * The user a token from {@link #token} was minted for.
+     */
+    public String userId(String token) {
+        return subjects.get(token);
+    }
+
+    private String mint(String userId) {
+        Instant now = Instant.now();
+        var claims = new JWTClaimsSet.Builder()
+                .subject(userId)
+                .issuer(issuer())
+                .audience(AUDIENCE)
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(Duration.ofDays(1))))
+                .build();
+        var jwt = new SignedJWT(new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(key.getKeyID()).build(), claims);
+        try {
+            jwt.sign(new RSASSASigner(key));
+        } catch (JOSEException e) {
+            throw new IllegalStateException(e);
+        }
+        return jwt.serialize();
+    }
+
+    @Override
+    public void close() {
+        server.stop(0);
+    }
+}
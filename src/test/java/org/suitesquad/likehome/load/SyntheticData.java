@@ -0,0 +1,196 @@
+package org.suitesquad.likehome.load;
+
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.geo.GeoJsonPoint;
+import org.suitesquad.likehome.model.*;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.*;
+
+/**
+ * Generates a deterministic synthetic data set and writes it to a database, for the end-to-end load tests.
+ * <p>
+ * Scale is read from system properties, passed through by the loadTest Gradle task:
+ * <ul>
+ *     <li>load.hotels: number of hotels (default 1000)</li>
+ *     <li>load.roomsPerHotel: rooms per hotel (default 5)</li>
+ *     <li>load.users: number of users (default 2000)</li>
+ *     <li>load.reviewsPerHotel: reviews per hotel, each by a user with a past stay there (default 5)</li>
+ * </ul>
+ * Every room with free cancellation also gets one future reservation, so there is something to cancel.
+ */
+public class SyntheticData {
+    private static final String[] CITIES = {"San Jose", "Seattle", "Austin", "Denver", "Boston", "Miami", "Chicago"};
+    private static final String[] STATES = {"California", "Washington", "Texas", "Colorado", "Massachusetts", "Florida", "Illinois"};
+    /**
+     * Latitude and longitude of each city.
+     */
+    static final double[][] CITY_COORDINATES = {{37.34, -121.89}, {47.61, -122.33}, {30.27, -97.74},
+            {39.74, -104.99}, {42.36, -71.06}, {25.76, -80.19}, {41.88, -87.63}};
+    private static final String[] ROOM_NAMES = {"Basic Suite", "Oceanside Deluxe", "Family Room", "Penthouse", "Studio"};
+
+    /**
+     * A user's reservation or review, identified by the user's ID and the reservation or hotel ID.
+     */
+    public record UserItem(String userId, String itemId) {}
+
+    /**
+     * What the load test needs to know about the seeded data.
+     */
+    public record Seed(List<String> userIds, List<Room> rooms, List<UserItem> reviews,
+                       List<UserItem> futureReservations) {}
+
+    private final Random random = new Random(42);
+    private final int hotels = Integer.getInteger("load.hotels", 1000);
+    private final int roomsPerHotel = Integer.getInteger("load.roomsPerHotel", 5);
+    private final int users = Integer.getInteger("load.users", 2000);
+    private final int reviewsPerHotel = Integer.getInteger("load.reviewsPerHotel", 5);
+
+    /**
+     * Drops the database and fills it with fresh data.
+     */
+    public Seed seed(MongoTemplate mongoTemplate) {
+        mongoTemplate.getDb().drop();
+
+        var userList = new ArrayList<User>(users);
+        for (int i = 0; i < users; i++) {
+            var user = new User();
+            user.setId("load-user-" + i);
+            user.setEmail("load-user-" + i + "@example.com");
+            user.setFirstName("First" + i);
+            user.setLastName("Last" + i);
+            user.setRewardPoints(random.nextInt(1000));
+            userList.add(user);
+        }
+        mongoTemplate.insert(userList, User.class);
+
+        var hotelList = new ArrayList<Hotel>(hotels);
+        for (int i = 0; i < hotels; i++) {
+            hotelList.add(hotel(i));
+        }
+        mongoTemplate.insert(hotelList, Hotel.class);
+
+        var roomList = new ArrayList<Room>(hotels * roomsPerHotel);
+        for (Hotel hotel : hotelList) {
+            for (int i = 0; i < roomsPerHotel; i++) {
+                roomList.add(room(hotel.getId()));
+            }
+        }
+        mongoTemplate.insert(roomList, Room.class);
+
+        var reservations = new ArrayList<Reservation>();
+        var reviewList = new ArrayList<Review>();
+        LocalDate today = LocalDate.now(ZoneOffset.UTC);
+        for (int h = 0; h < hotels; h++) {
+            Hotel hotel = hotelList.get(h);
+            Set<String> reviewers = new HashSet<>();
+            while (reviewers.size() < Math.min(reviewsPerHotel, users)) {
+                reviewers.add(userList.get(random.nextInt(users)).getId());
+            }
+            for (String userId : reviewers) {
+                Room room = roomList.get(h * roomsPerHotel + random.nextInt(roomsPerHotel));
+                LocalDate checkIn = today.minusDays(30 + random.nextInt(700));
+                reservations.add(reservation(userId, room, checkIn, 1 + random.nextInt(4)));
+
+                var review = new Review();
+                review.setHotelId(hotel.getId());
+                review.setUserId(userId);
+                review.setContents("Synthetic review of " + hotel.getName());
+                review.setRating(1 + random.nextInt(5));
+                review.setReviewDate(toDate(checkIn.plusDays(5)));
+                reviewList.add(review);
+            }
+        }
+        var futureReservations = new ArrayList<Reservation>();
+        for (Room room : roomList) {
+            if (room.getCancellationPolicy().isAllowed()) {
+                String userId = userList.get(random.nextInt(users)).getId();
+                // beyond the dates booked by the load test, so these never collide with its bookings
+                futureReservations.add(reservation(userId, room, today.plusDays(400 + random.nextInt(300)), 1));
+            }
+        }
+        mongoTemplate.insert(reservations, Reservation.class);
+        mongoTemplate.insert(futureReservations, Reservation.class);
+        mongoTemplate.insert(reviewList, Review.class);
+
+        return new Seed(
+                userList.stream().map(User::getId).toList(),
+                roomList,
+                reviewList.stream().map(review -> new UserItem(review.getUserId(), review.getHotelId())).toList(),
+                futureReservations.stream().map(r -> new UserItem(r.getUserId(), r.getId())).toList());
+    }
+
+    private Hotel hotel(int i) {
+        var location = new Hotel.Location();
+        int place = random.nextInt(CITIES.length);
+        location.setStreetAddress(i + " Main St");
+        location.setCity(CITIES[place]);
+        location.setState(STATES[place]);
+        location.setCountry("United States");
+        location.setZipCode(String.format("%05d", random.nextInt(100000)));
+        location.setCoordinates(new GeoJsonPoint(CITY_COORDINATES[place][1] + random.nextGaussian() * 0.05,
+                CITY_COORDINATES[place][0] + random.nextGaussian() * 0.05));
+
+        var contactInfo = new Hotel.ContactInfo();
+        contactInfo.setPhone(String.format("555-%04d", i % 10000));
+        contactInfo.setEmail("hotel" + i + "@example.com");
+        contactInfo.setWebsite("https://example.com/hotels/" + i);
+
+        var hotel = new Hotel();
+        hotel.setName("Load Hotel " + i);
+        hotel.setDescription("A synthetic hotel for load testing.");
+        hotel.setRating(1 + random.nextInt(40) / 10.0);
+        hotel.setLocation(location);
+        hotel.setContactInfo(contactInfo);
+        hotel.setAmenities(List.of("WiFi", "Pool", "Parking"));
+        hotel.setImageUrls(List.of("https://example.com/hotels/" + i + ".jpg"));
+        return hotel;
+    }
+
+    private Room room(String hotelId) {
+        var policy = new Room.CancellationPolicy();
+        policy.setAllowed(random.nextInt(4) != 0);
+        policy.setPenaltyFee(random.nextInt(100));
+
+        var room = new Room();
+        room.setHotelId(hotelId);
+        room.setName(ROOM_NAMES[random.nextInt(ROOM_NAMES.length)]);
+        room.setBaths(1 + random.nextInt(3));
+        room.setBeds(1 + random.nextInt(4));
+        room.setGuests(1 + random.nextInt(6));
+        room.setBedrooms(1 + random.nextInt(3));
+        room.setDescription("A synthetic room for load testing.");
+        room.setPricePerNight(50 + random.nextInt(450));
+        room.setCleaningFee(random.nextInt(100));
+        room.setServiceFee(random.nextInt(50));
+        room.setTaxRate(0.1);
+        room.setAvailability(1 + random.nextInt(5));
+        room.setImageUrls(List.of());
+        room.setAmenities(List.of("TV"));
+        room.setCancellationPolicy(policy);
+        return room;
+    }
+
+    private static Reservation reservation(String userId, Room room, LocalDate checkIn, int nights) {
+        var payment = new Reservation.Payment();
+        payment.setPaymentMethod("Card");
+        payment.setPaymentStatus("Paid");
+
+        var reservation = new Reservation();
+        reservation.setUserId(userId);
+        reservation.setHotelId(room.getHotelId());
+        reservation.setRoomId(room.getId());
+        reservation.setCheckIn(toDate(checkIn));
+        reservation.setCheckOut(toDate(checkIn.plusDays(nights)));
+        reservation.setTotalPrice(room.calculateTotalPrice(nights));
+        reservation.setBookingDate(toDate(checkIn.minusDays(10)));
+        reservation.setPayment(payment);
+        return reservation;
+    }
+
+    static Date toDate(LocalDate date) {
+        return Date.from(Instant.from(date.atStartOfDay(ZoneOffset.UTC)));
+    }
+}
@@ -0,0 +1,71 @@
+package org.suitesquad.likehome.load;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Tag;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.servlet.context.ServletWebServerApplicationContext;
+import org.suitesquad.likehome.RestApplication;
+import org.suitesquad.likehome.load.LoadGenerator.Endpoint;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Compares request handling on Tomcat's platform thread pool with virtual threads by running the public read
+ * endpoints against the database in DB_URL under increasing concurrency. Run with {@code ./gradlew loadTest}.
+ */
+@Tag("load")
+class ThreadingModelLoadTests {
+
+    @Test
+    void platformVersusVirtualThreads() throws Exception {
+        var results = new ArrayList<LoadGenerator.Result>();
+        for (boolean virtualThreads : new boolean[]{false, true}) {
+            try (var context = (ServletWebServerApplicationContext) new SpringApplicationBuilder(RestApplication.class)
+                    .run("--server.port=0", "--spring.threads.virtual.enabled=" + virtualThreads)) {
+                String baseUrl = "http://localhost:" + context.getWebServer().getPort();
+                results.addAll(new LoadGenerator().runAll(virtualThreads ? "virtual" : "platform",
+                        publicEndpoints(baseUrl)));
+            }
+        }
+        System.out.println(LoadGenerator.report(results));
+    }
+
+    /**
+     * The public read endpoints, spread over the first 100 hotels.
+     */
+    static List<Endpoint> publicEndpoints(String baseUrl) throws Exception {
+        List<String> hotelIds = new ArrayList<>();
+        try (var client = HttpClient.newHttpClient()) {
+            String body = client.send(get(baseUrl + "/hotels?limit=100"), HttpResponse.BodyHandlers.ofString()).body();
+            for (JsonNode hotel : new ObjectMapper().readTree(body)) {
+                hotelIds.add(hotel.get("id").asText());
+            }
+        }
+
+        var endpoints = new ArrayList<Endpoint>();
+        endpoints.add(new Endpoint("/hotels?limit=20", 4, () -> get(baseUrl + "/hotels?limit=20")));
+        endpoints.add(new Endpoint("/hotels?sort=rating&limit=20", 2, () -> get(baseUrl + "/hotels?sort=rating&limit=20")));
+        if (!hotelIds.isEmpty()) {
+            endpoints.add(new Endpoint("/hotels/{hotelId}", 4, () -> get(baseUrl + "/hotels/" + any(hotelIds))));
+            endpoints.add(new Endpoint("/hotels/{hotelId}/rooms", 3, () -> get(baseUrl + "/hotels/" + any(hotelIds) + "/rooms")));
+            endpoints.add(new Endpoint("/hotels/{hotelId}/reviews", 2, () -> get(baseUrl + "/hotels/" + any(hotelIds) + "/reviews")));
+        }
+        return endpoints;
+    }
+
+    static HttpRequest get(String url) {
+        return HttpRequest.newBuilder(URI.create(url)).GET().build();
+    }
+
+    private static String any(List<String> ids) {
+        return ids.get(ThreadLocalRandom.current().nextInt(ids.size()));
+    }
+}
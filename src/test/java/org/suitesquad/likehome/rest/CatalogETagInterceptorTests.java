@@ -0,0 +1,102 @@
+package org.suitesquad.likehome.rest;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.http.CacheControl;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.HandlerMapping;
+import org.suitesquad.likehome.service.CatalogChangedEvent;
+import org.suitesquad.likehome.service.CatalogVersionService;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class CatalogETagInterceptorTests {
+    private final CatalogVersionService versions = new CatalogVersionService(true, Duration.ofMinutes(10));
+    private final CatalogETagInterceptor interceptor = new CatalogETagInterceptor(versions, CacheControl.noCache());
+    private final HandlerMethod getHotelById;
+    private final HandlerMethod streamHotelById;
+
+    CatalogETagInterceptorTests() throws NoSuchMethodException {
+        getHotelById = new HandlerMethod(new PublicController(),
+                PublicController.class.getMethod("getHotelById", String.class));
+        streamHotelById = new HandlerMethod(new ReactivePublicController(),
+                ReactivePublicController.class.getMethod("streamHotelById", String.class));
+    }
+
+    @Test
+    void notModifiedUntilTheHotelChanges() {
+        var first = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(hotelRequest("h1", null), first, getHotelById));
+        String etag = first.getHeader("ETag");
+        assertNotNull(etag);
+
+        var second = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(hotelRequest("h1", etag), second, getHotelById));
+        assertEquals(304, second.getStatus());
+
+        versions.onCatalogChanged(new CatalogChangedEvent(CatalogChangedEvent.HOTELS, "h2"));
+        assertFalse(interceptor.preHandle(hotelRequest("h1", etag), new MockHttpServletResponse(), getHotelById));
+
+        versions.onCatalogChanged(new CatalogChangedEvent(CatalogChangedEvent.ROOMS, "r1", "h1"));
+        assertTrue(interceptor.preHandle(hotelRequest("h1", etag), new MockHttpServletResponse(), getHotelById));
+    }
+
+    @Test
+    void unknownHotelChangesEveryHotel() {
+        var first = new MockHttpServletResponse();
+        interceptor.preHandle(hotelRequest("h1", null), first, getHotelById);
+
+        versions.onCatalogChanged(new CatalogChangedEvent(CatalogChangedEvent.ROOMS, "r1"));
+        assertTrue(interceptor.preHandle(hotelRequest("h1", first.getHeader("ETag")),
+                new MockHttpServletResponse(), getHotelById));
+    }
+
+    @Test
+    void representationsHaveTheirOwnETags() {
+        var json = new MockHttpServletResponse();
+        interceptor.preHandle(hotelRequest("h1", null), json, getHotelById);
+        var ndjson = new MockHttpServletResponse();
+        interceptor.preHandle(hotelRequest("h1", null), ndjson, streamHotelById);
+        assertNotEquals(json.getHeader("ETag"), ndjson.getHeader("ETag"));
+
+        assertTrue(interceptor.preHandle(hotelRequest("h1", json.getHeader("ETag")),
+                new MockHttpServletResponse(), streamHotelById));
+        var notModified = new MockHttpServletResponse();
+        assertFalse(interceptor.preHandle(hotelRequest("h1", ndjson.getHeader("ETag")), notModified, streamHotelById));
+        assertEquals(304, notModified.getStatus());
+    }
+
+    @Test
+    void versionsExpireWithoutChangeStreams() throws InterruptedException {
+        var expiring = new CatalogETagInterceptor(new CatalogVersionService(false, Duration.ofMillis(1)),
+                CacheControl.noCache());
+        var first = new MockHttpServletResponse();
+        expiring.preHandle(hotelRequest("h1", null), first, getHotelById);
+
+        Thread.sleep(5);
+        assertTrue(expiring.preHandle(hotelRequest("h1", first.getHeader("ETag")),
+                new MockHttpServletResponse(), getHotelById));
+    }
+
+    @Test
+    void ignoresAvailabilityFilters() {
+        var request = hotelRequest("h1", null);
+        request.setParameter("checkIn", "2030-01-01");
+        var response = new MockHttpServletResponse();
+        assertTrue(interceptor.preHandle(request, response, getHotelById));
+        assertNull(response.getHeader("ETag"));
+    }
+
+    private static MockHttpServletRequest hotelRequest(String hotelId, String ifNoneMatch) {
+        var request = new MockHttpServletRequest("GET", "/hotels/" + hotelId);
+        request.setAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE, Map.of("hotelId", hotelId));
+        if (ifNoneMatch != null) {
+            request.addHeader("If-None-Match", ifNoneMatch);
+        }
+        return request;
+    }
+}
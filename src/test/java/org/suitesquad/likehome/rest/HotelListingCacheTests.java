@@ -0,0 +1,107 @@
+package org.suitesquad.likehome.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.MappingJackson2HttpMessageConverter;
+import org.springframework.http.server.ServletServerHttpRequest;
+import org.springframework.http.server.ServletServerHttpResponse;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.method.HandlerMethod;
+import org.suitesquad.likehome.service.CatalogChangedEvent;
+import org.suitesquad.likehome.service.CatalogVersionService;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class HotelListingCacheTests {
+    private static final Method GET_ALL_HOTELS = Arrays.stream(PublicController.class.getMethods())
+            .filter(method -> method.getName().equals("getAllHotels"))
+            .findFirst().orElseThrow();
+
+    private final CatalogVersionService versions = new CatalogVersionService(true, Duration.ofMinutes(10));
+    private final HotelListingCache cache = new HotelListingCache(versions, new ObjectMapper(),
+            new SimpleMeterRegistry(), 1 << 20, Duration.ofMinutes(10));
+    private final HandlerMethod handler = new HandlerMethod(new PublicController(), GET_ALL_HOTELS);
+    private final List<Map<String, String>> body = List.of(Map.of("id", "h1", "name", "Hotel 1"));
+
+    @Test
+    void servesRepeatedListingsFromCache() throws IOException {
+        assertTrue(fill(request("Seattle")));
+
+        var request = request("seattle"); // filters are case-insensitive
+        request.addHeader("Accept-Encoding", "gzip, deflate");
+        var response = new MockHttpServletResponse();
+        assertFalse(cache.preHandle(request, response, handler));
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        try (var json = new GZIPInputStream(new ByteArrayInputStream(response.getContentAsByteArray()))) {
+            assertEquals(new ObjectMapper().writeValueAsString(body), new String(json.readAllBytes()));
+        }
+
+        var plain = new MockHttpServletResponse();
+        assertFalse(cache.preHandle(request("Seattle"), plain, handler));
+        assertNull(plain.getHeader("Content-Encoding"));
+        assertEquals(new ObjectMapper().writeValueAsString(body), plain.getContentAsString());
+    }
+
+    @Test
+    void missesAfterCatalogChanges() throws IOException {
+        fill(request("Seattle"));
+        versions.onCatalogChanged(new CatalogChangedEvent(CatalogChangedEvent.HOTELS, "h1"));
+        assertTrue(cache.preHandle(request("Seattle"), new MockHttpServletResponse(), handler));
+    }
+
+    @Test
+    void doesNotCacheAvailabilitySearches() throws IOException {
+        var request = request("Seattle");
+        request.setParameter("guests", "2");
+        fill(request);
+        assertTrue(cache.preHandle(request, new MockHttpServletResponse(), handler));
+    }
+
+    @Test
+    void expiresEntries() throws IOException {
+        var expiring = new HotelListingCache(versions, new ObjectMapper(), new SimpleMeterRegistry(), 1 << 20,
+                Duration.ZERO);
+        var request = request("Seattle");
+        assertTrue(expiring.preHandle(request, new MockHttpServletResponse(), handler));
+        expiring.beforeBodyWrite(body, new MethodParameter(GET_ALL_HOTELS, -1), MediaType.APPLICATION_JSON,
+                MappingJackson2HttpMessageConverter.class, new ServletServerHttpRequest(request),
+                new ServletServerHttpResponse(new MockHttpServletResponse()));
+        assertTrue(expiring.preHandle(request("Seattle"), new MockHttpServletResponse(), handler));
+    }
+
+    /**
+     * Runs a request through the cache as Spring MVC would on a miss.
+     *
+     * @return whether it was a miss
+     */
+    private boolean fill(MockHttpServletRequest request) throws IOException {
+        var response = new MockHttpServletResponse();
+        if (!cache.preHandle(request, response, handler)) {
+            return false;
+        }
+        cache.beforeBodyWrite(body, new MethodParameter(GET_ALL_HOTELS, -1), MediaType.APPLICATION_JSON,
+                MappingJackson2HttpMessageConverter.class, new ServletServerHttpRequest(request),
+                new ServletServerHttpResponse(response));
+        return true;
+    }
+
+    private static MockHttpServletRequest request(String location) {
+        var request = new MockHttpServletRequest("GET", "/hotels");
+        request.setParameter("location", location);
+        request.setParameter("sort", "rating");
+        return request;
+    }
+}
@@ -0,0 +1,93 @@
+package org.suitesquad.likehome.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.suitesquad.likehome.model.Hotel;
+import org.suitesquad.likehome.model.Reservation;
+import org.suitesquad.likehome.model.Room;
+import org.suitesquad.likehome.service.BulkDataService.Format;
+import org.suitesquad.likehome.service.BulkDataService.Parsed;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class BulkDataServiceTests {
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void parsesCsvWithNestedAndListColumns() throws IOException {
+        List<Parsed<Hotel>> hotels = parse(Hotel.class, Format.CSV, """
+                name,rating,location.city,location.state,amenities[]
+                Seaside Inn,4.5,Seattle,Washington,WiFi; Pool
+                "Lodge, Austin",,Austin,Texas,
+                Broken,five,Denver,Colorado,
+                """);
+        assertEquals(3, hotels.size());
+
+        Hotel seaside = hotels.get(0).document();
+        assertEquals("Seaside Inn", seaside.getName());
+        assertEquals(4.5, seaside.getRating());
+        assertEquals("Seattle", seaside.getLocation().getCity());
+        assertEquals(List.of("WiFi", "Pool"), seaside.getAmenities());
+
+        Hotel lodge = hotels.get(1).document();
+        assertEquals("Lodge, Austin", lodge.getName());
+        assertEquals(0, lodge.getRating());
+        assertNull(lodge.getAmenities());
+
+        assertEquals(4, hotels.get(2).line());
+        assertNull(hotels.get(2).document());
+        assertNotNull(hotels.get(2).error());
+    }
+
+    @Test
+    void parsesNdjsonLineByLine() throws IOException {
+        List<Parsed<Room>> rooms = parse(Room.class, Format.NDJSON, """
+                {"hotelId": "h1", "name": "Basic Suite", "pricePerNight": 120}
+
+                {"hotelId": "h1", "name": "Penthouse", "pricePerNight": "a lot"}
+                {"hotelId": "h1", "name": "Studio"
+                {"hotelId": "h2", "name": "Family Room", "pricePerNight": 250}
+                """);
+        assertEquals(List.of(1L, 3L, 4L, 5L), rooms.stream().map(Parsed::line).toList());
+        assertEquals(120, rooms.get(0).document().getPricePerNight());
+        assertNotNull(rooms.get(1).error());
+        assertNotNull(rooms.get(2).error());
+        assertEquals("Family Room", rooms.get(3).document().getName());
+    }
+
+    @Test
+    void rejectsConflictingColumns() {
+        assertThrows(IllegalArgumentException.class,
+                () -> BulkDataService.unflatten(Map.of("location", "Seattle", "location.city", "Seattle")));
+    }
+
+    @Test
+    void validatesDocuments() throws IOException {
+        Reservation reservation = parse(Reservation.class, Format.NDJSON, """
+                {"userId": "u1", "roomId": "r1", "checkIn": "2030-01-05", "checkOut": "2030-01-03", "payment": {}}
+                """).getFirst().document();
+        assertEquals("checkIn must be before checkOut", BulkDataService.validate(reservation));
+
+        reservation.setCheckOut(new Date(reservation.getCheckIn().getTime() + 86_400_000));
+        assertNull(BulkDataService.validate(reservation));
+
+        var room = new Room();
+        room.setName("Studio");
+        assertEquals("hotelId is required", BulkDataService.validate(room));
+    }
+
+    private <T> List<Parsed<T>> parse(Class<T> type, Format format, String input) throws IOException {
+        var parsed = new ArrayList<Parsed<T>>();
+        BulkDataService.parse(mapper, type, format,
+                new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), parsed::add);
+        return parsed;
+    }
+}
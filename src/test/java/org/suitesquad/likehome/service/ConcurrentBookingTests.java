@@ -0,0 +1,263 @@
+package org.suitesquad.likehome.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.suitesquad.likehome.EmbeddedMongo;
+import org.suitesquad.likehome.model.HotelDailyStats;
+import org.suitesquad.likehome.model.Reservation;
+import org.suitesquad.likehome.model.Room;
+import org.suitesquad.likehome.model.RoomNight;
+import org.suitesquad.likehome.model.User;
+import org.suitesquad.likehome.service.BulkDataService.Format;
+import org.suitesquad.likehome.service.BulkDataService.Progress;
+
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Hammers reward points and room bookings from many threads and checks that no update is lost.
+ * Runs against an {@link EmbeddedMongo}.
+ */
+@SpringBootTest
+class ConcurrentBookingTests {
+
+    private static final int THREADS = 64;
+
+    @BeforeAll
+    static void startMongo() {
+        EmbeddedMongo.assumeRunning();
+    }
+
+    @DynamicPropertySource
+    static void mongo(DynamicPropertyRegistry registry) {
+        EmbeddedMongo.register(registry);
+    }
+
+    @Autowired private UserService userService;
+    @Autowired private RoomService roomService;
+    @Autowired private AvailabilityService availabilityService;
+    @Autowired private BulkDataService bulkDataService;
+    @Autowired private MongoTemplate mongoTemplate;
+
+    private final String userId = "concurrency-test-" + UUID.randomUUID();
+    private final String roomId = "concurrency-test-" + UUID.randomUUID();
+
+    @AfterEach
+    void cleanUp() {
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(userId)), User.class);
+        mongoTemplate.remove(new Query(Criteria.where("_id").is(roomId)), Room.class);
+        mongoTemplate.remove(new Query(Criteria.where("roomId").is(roomId)), RoomNight.class);
+        mongoTemplate.remove(new Query(Criteria.where("roomId").is(roomId)), Reservation.class);
+        mongoTemplate.remove(new Query(Criteria.where("hotelId").is("concurrency-test")), HotelDailyStats.class);
+    }
+
+    @Test
+    void noLostPointUpdates() throws Exception {
+        var user = new User();
+        user.setId(userId);
+        user.setEmail(userId + "@example.com");
+        user.setRewardPoints(1000);
+        userService.addUserData(user);
+
+        // 1000 spends of 1 point compete with 1000 additions of 1 point
+        int successes = runConcurrently(2000, i -> {
+            if (i % 2 == 0) {
+                userService.addRewardPoints(userId, 1);
+                return true;
+            }
+            return userService.spendRewardPoints(userId, 1).isPresent();
+        });
+
+        assertEquals(2000, successes);
+        assertEquals(1000, userService.findById(userId).orElseThrow().getRewardPoints());
+    }
+
+    @Test
+    void pointsNeverGoNegative() throws Exception {
+        var user = new User();
+        user.setId(userId);
+        user.setEmail(userId + "@example.com");
+        user.setRewardPoints(100);
+        userService.addUserData(user);
+
+        int successes = runConcurrently(500, i -> userService.spendRewardPoints(userId, 1).isPresent());
+
+        assertEquals(100, successes);
+        assertEquals(0, userService.findById(userId).orElseThrow().getRewardPoints());
+    }
+
+    @Test
+    void noDoubleBooking() throws Exception {
+        var room = new Room();
+        room.setId(roomId);
+        room.setHotelId("concurrency-test");
+        room.setAvailability(3);
+        roomService.addRoomData(room);
+
+        Date checkIn = date(LocalDate.now().plusYears(1));
+        Date checkOut = date(LocalDate.now().plusYears(1).plusDays(3));
+        // half of the attempts overlap only on the last night
+        Date lateCheckIn = date(LocalDate.now().plusYears(1).plusDays(2));
+        Date lateCheckOut = date(LocalDate.now().plusYears(1).plusDays(5));
+
+        int successes = runConcurrently(200, i -> {
+            try {
+                if (i % 2 == 0) {
+                    availabilityService.reserve(room, checkIn, checkOut);
+                } else {
+                    availabilityService.reserve(room, lateCheckIn, lateCheckOut);
+                }
+                return true;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        });
+
+        assertEquals(3, successes);
+        for (RoomNight night : mongoTemplate.find(new Query(Criteria.where("roomId").is(roomId)), RoomNight.class)) {
+            assertTrue(night.getBookedUnits() <= 3, "night " + night.getNight() + " is overbooked");
+        }
+    }
+
+    @Test
+    void failedMovesNeverFreeTheOldNights() throws Exception {
+        Room room = addRoom(1);
+        Date checkIn = date(LocalDate.now().plusYears(1));
+        Date checkOut = date(LocalDate.now().plusYears(1).plusDays(2));
+        Date fullCheckIn = date(LocalDate.now().plusYears(1).plusDays(5));
+        Date fullCheckOut = date(LocalDate.now().plusYears(1).plusDays(7));
+        availabilityService.reserve(room, checkIn, checkOut);
+        availabilityService.reserve(room, fullCheckIn, fullCheckOut);
+
+        // moves to full nights compete with bookings of the nights being moved from
+        int successes = runConcurrently(200, i -> {
+            try {
+                if (i % 2 == 0) {
+                    availabilityService.reserveMove(room, checkIn, checkOut, fullCheckIn, fullCheckOut);
+                } else {
+                    availabilityService.reserve(room, checkIn, checkOut);
+                }
+                return true;
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        });
+
+        assertEquals(0, successes);
+        for (RoomNight night : mongoTemplate.find(new Query(Criteria.where("roomId").is(roomId)), RoomNight.class)) {
+            assertEquals(1, night.getBookedUnits(), "night " + night.getNight());
+        }
+    }
+
+    @Test
+    void movesKeepTheOverlappingNights() {
+        Room room = addRoom(1);
+        LocalDate day = LocalDate.now().plusYears(1);
+        Date oldCheckIn = date(day);
+        Date oldCheckOut = date(day.plusDays(3));
+        Date checkIn = date(day.plusDays(1));
+        Date checkOut = date(day.plusDays(4));
+        availabilityService.reserve(room, oldCheckIn, oldCheckOut);
+
+        availabilityService.reserveMove(room, oldCheckIn, oldCheckOut, checkIn, checkOut);
+        availabilityService.releaseExcept(roomId, oldCheckIn, oldCheckOut, checkIn, checkOut);
+
+        assertTrue(availabilityService.isAvailable(room, oldCheckIn, checkIn));
+        assertFalse(availabilityService.isAvailable(room, checkIn, checkOut));
+        var bookedUnits = new TreeMap<Long, Integer>();
+        mongoTemplate.find(new Query(Criteria.where("roomId").is(roomId)), RoomNight.class)
+                .forEach(night -> bookedUnits.put(night.getNight() - day.toEpochDay(), night.getBookedUnits()));
+        assertEquals(Map.of(0L, 0, 1L, 1, 2L, 1, 3L, 1), bookedUnits);
+    }
+
+    @Test
+    void importsNeverOverbook() {
+        Room room = addRoom(1);
+        var user = new User();
+        user.setId(userId);
+        user.setEmail(userId + "@example.com");
+        userService.addUserData(user);
+        LocalDate day = LocalDate.now().plusYears(1);
+
+        String reservations = """
+                {"userId": "%1$s", "roomId": "%2$s", "checkIn": "%3$s", "checkOut": "%4$s", "payment": {}}
+                {"userId": "%1$s", "roomId": "%2$s", "checkIn": "%4$s", "checkOut": "%5$s", "payment": {}}
+                {"userId": "%1$s", "roomId": "%2$s", "checkIn": "%3$s", "checkOut": "%5$s", "payment": {}}
+                {"userId": "%1$s", "roomId": "%2$s", "checkIn": "%3$s", "checkOut": "%5$s", "payment": {}, \
+                "cancellationDate": "%3$s"}
+                {"userId": "unknown-user", "roomId": "%2$s", "checkIn": "%5$s", "checkOut": "%6$s", "payment": {}}
+                """.formatted(userId, roomId, day, day.plusDays(2), day.plusDays(4), day.plusDays(6));
+        Progress progress = bulkDataService.importData("reservations", Format.NDJSON,
+                new ByteArrayInputStream(reservations.getBytes(StandardCharsets.UTF_8)), p -> {});
+
+        assertEquals(3, progress.inserted());
+        assertEquals(2, progress.rejected());
+        assertFalse(availabilityService.isAvailable(room, date(day), date(day.plusDays(4))));
+        assertTrue(availabilityService.isAvailable(room, date(day.plusDays(4)), date(day.plusDays(6))));
+        for (RoomNight night : mongoTemplate.find(new Query(Criteria.where("roomId").is(roomId)), RoomNight.class)) {
+            assertEquals(1, night.getBookedUnits(), "night " + night.getNight());
+        }
+    }
+
+    private Room addRoom(int availability) {
+        var room = new Room();
+        room.setId(roomId);
+        room.setHotelId("concurrency-test");
+        room.setAvailability(availability);
+        roomService.addRoomData(room);
+        return room;
+    }
+
+    private interface Attempt {
+        boolean run(int i) throws Exception;
+    }
+
+    /**
+     * @return the number of attempts that returned true
+     */
+    private static int runConcurrently(int attempts, Attempt attempt) throws Exception {
+        var successes = new AtomicInteger();
+        try (ExecutorService executor = Executors.newFixedThreadPool(THREADS)) {
+            var futures = IntStream.range(0, attempts)
+                    .mapToObj(i -> executor.submit((Callable<Void>) () -> {
+                        if (attempt.run(i)) {
+                            successes.incrementAndGet();
+                        }
+                        return null;
+                    }))
+                    .toList();
+            for (Future<Void> future : futures) {
+                future.get();
+            }
+        }
+        return successes.get();
+    }
+
+    private static Date date(LocalDate date) {
+        return Date.from(date.atStartOfDay(ZoneOffset.UTC).toInstant());
+    }
+}
@@ -0,0 +1,150 @@
+package org.suitesquad.likehome.service;
+
+import org.bson.Document;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.suitesquad.likehome.EmbeddedMongo;
+import org.suitesquad.likehome.model.HotelDailyStats;
+import org.suitesquad.likehome.model.Reservation;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class DailyStatsServiceTests {
+
+    @Test
+    void cancellingRemovesWhatBookingAdded() {
+        var payment = new Reservation.Payment();
+        payment.setPointsUsed(500);
+        var reservation = new Reservation();
+        reservation.setTotalPrice(320.75);
+        reservation.setPayment(payment);
+        Date checkIn = Date.from(Instant.parse("2030-03-01T15:00:00Z"));
+        Date checkOut = Date.from(Instant.parse("2030-03-04T11:00:00Z"));
+
+        Document booked = DailyStatsService.contribution(reservation, checkIn, checkOut, 1)
+                .getUpdateObject().get("$inc", Document.class);
+        assertEquals(3L, booked.get("nights"));
+        assertEquals(320.75, booked.get("revenue"));
+        assertEquals((long) reservation.calculatePointsEarned(), booked.get("pointsEarned"));
+        assertEquals(500L, booked.get("pointsSpent"));
+        assertEquals(reservation.calculatePointsGainedOrLost(),
+                (long) booked.get("pointsEarned") - (long) booked.get("pointsSpent"));
+
+        Document cancelled = DailyStatsService.contribution(reservation, checkIn, checkOut, -1)
+                .getUpdateObject().get("$inc", Document.class);
+        for (String field : booked.keySet()) {
+            assertEquals(0, ((Number) booked.get(field)).doubleValue() + ((Number) cancelled.get(field)).doubleValue());
+        }
+    }
+
+    @Test
+    void sameDayCheckOutCountsOneNight() {
+        var payment = new Reservation.Payment();
+        var reservation = new Reservation();
+        reservation.setPayment(payment);
+        Date day = Date.from(Instant.parse("2030-03-01T10:00:00Z"));
+        assertEquals(1L, DailyStatsService.contribution(reservation, day, day, 1)
+                .getUpdateObject().get("$inc", Document.class).get("nights"));
+    }
+
+    /**
+     * Checks the incremental updates against {@link DailyStatsService#rebuild} on an {@link EmbeddedMongo}.
+     */
+    @Nested
+    @SpringBootTest
+    class Rollup {
+        private static final LocalDate DAY = LocalDate.of(2030, 3, 1);
+
+        @BeforeAll
+        static void startMongo() {
+            EmbeddedMongo.assumeRunning();
+        }
+
+        @DynamicPropertySource
+        static void mongo(DynamicPropertyRegistry registry) {
+            EmbeddedMongo.register(registry);
+        }
+
+        @Autowired private DailyStatsService dailyStatsService;
+        @Autowired private MongoTemplate mongoTemplate;
+
+        private final String hotelId = "stats-test-" + UUID.randomUUID();
+
+        @AfterEach
+        void cleanUp() {
+            mongoTemplate.remove(new Query(Criteria.where("hotelId").is(hotelId)), Reservation.class);
+            mongoTemplate.remove(new Query(Criteria.where("hotelId").is(hotelId)), HotelDailyStats.class);
+        }
+
+        @Test
+        void incrementalUpdatesMatchRebuild() {
+            Reservation kept = book(0, 2, 200, 0);
+            Reservation moved = book(1, 3, 150.5, 250);
+            Reservation extended = book(1, 2, 99.75, 0); // prices add up exactly as doubles
+            Reservation cancelled = book(0, 1, 80, 100);
+
+            dailyStatsService.recordDateChange(moved, toDate(DAY.plusDays(3)), toDate(DAY.plusDays(5)));
+            moved.setCheckIn(toDate(DAY.plusDays(3)));
+            moved.setCheckOut(toDate(DAY.plusDays(5)));
+            mongoTemplate.save(moved);
+            dailyStatsService.recordDateChange(extended, extended.getCheckIn(), toDate(DAY.plusDays(4)));
+            extended.setCheckOut(toDate(DAY.plusDays(4)));
+            mongoTemplate.save(extended);
+            dailyStatsService.recordCancellation(cancelled);
+            cancelled.setCancellationDate(new Date());
+            mongoTemplate.save(cancelled);
+
+            List<List<Object>> recorded = stats();
+            assertFalse(recorded.isEmpty());
+            assertEquals(kept.getHotelId(), recorded.getFirst().getFirst());
+            dailyStatsService.rebuild();
+            assertEquals(recorded, stats());
+        }
+
+        private Reservation book(int checkInDay, int checkOutDay, double totalPrice, int pointsUsed) {
+            var payment = new Reservation.Payment();
+            payment.setPointsUsed(pointsUsed);
+            var reservation = new Reservation();
+            reservation.setHotelId(hotelId);
+            reservation.setRoomId(hotelId + "-room");
+            reservation.setCheckIn(toDate(DAY.plusDays(checkInDay)));
+            reservation.setCheckOut(toDate(DAY.plusDays(checkOutDay)));
+            reservation.setTotalPrice(totalPrice);
+            reservation.setPayment(payment);
+            mongoTemplate.insert(reservation);
+            dailyStatsService.recordBooking(reservation);
+            return reservation;
+        }
+
+        private List<List<Object>> stats() {
+            var query = new Query(Criteria.where("hotelId").is(hotelId)).with(Sort.by("day"));
+            return mongoTemplate.find(query, HotelDailyStats.class).stream()
+                    .map(stats -> List.<Object>of(stats.getHotelId(), stats.getDay(), stats.getBookings(),
+                            stats.getCancellations(), stats.getNights(), stats.getRevenue(),
+                            stats.getPointsEarned(), stats.getPointsSpent()))
+                    .toList();
+        }
+
+        private static Date toDate(LocalDate day) {
+            return Date.from(day.atStartOfDay(ZoneOffset.UTC).toInstant());
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package org.suitesquad.likehome.service;
+
+import org.bson.Document;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.suitesquad.likehome.model.Hotel;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotelSearchIndexTests {
+    private final HotelSearchIndex index = new HotelSearchIndex();
+
+    HotelSearchIndexTests() {
+        index.index(List.of(
+                hotel("1", "Seaside Inn", "Seattle", "Washington", 4.5),
+                hotel("2", "Grand Seattle Hotel", "Seattle", "Washington", 4.0),
+                hotel("3", "Hotel San Jose", "San Jose", "California", 3.5),
+                hotel("4", "Austin Lodge", "Austin", "Texas", 5.0)));
+    }
+
+    @Test
+    void findsSubstringsIgnoringCase() {
+        assertEquals(Set.of("1", "2"), index.findIds("SEATT", null));
+        assertEquals(Set.of("3"), index.findIds("an jo", null));
+        assertEquals(Set.of("2", "3"), index.findIds(null, "hotel"));
+        assertEquals(Set.of("2"), index.findIds("wash", "grand"));
+        assertEquals(Set.of("4"), index.findIds("x", null)); // shorter than a trigram
+        assertEquals(Set.of(), index.findIds("boston", null));
+        assertEquals(4, index.findIds(null, "").size());
+    }
+
+    @Test
+    void filtersByIdsOnlyWithChangeStreams() {
+        Document regexes = index.criteria("seattle", "grand").getCriteriaObject();
+        assertFalse(regexes.containsKey("_id"));
+
+        ReflectionTestUtils.setField(index, "changeStreams", true);
+        Document ids = index.criteria("seattle", "grand").getCriteriaObject();
+        assertEquals(Set.of("2"), Set.copyOf((Collection<?>) ids.get("_id", Document.class).get("$in")));
+    }
+
+    @Test
+    void ranksPrefixesFirstAndToleratesTypos() {
+        assertEquals(List.of("1", "2"), ids(index.suggest("sea", 10)));
+        assertEquals(List.of("4"), ids(index.suggest("austn", 10)));
+        assertEquals(List.of("2", "1"), ids(index.suggest("seatle", 10)));
+        assertTrue(index.suggest("zzz", 10).isEmpty());
+        assertThrows(IllegalArgumentException.class,
+                () -> index.suggest("sea", HotelSearchIndex.MAX_SUGGESTIONS + 1));
+    }
+
+    @Test
+    void followsHotelRemovals() {
+        index.index(List.of(hotel("4", "Austin Lodge", "Austin", "Texas", 5.0)));
+        assertEquals(Set.of(), index.findIds("seattle", null));
+    }
+
+    @Test
+    void boundsEditDistance() {
+        assertEquals(1, HotelSearchIndex.editDistance("seatle", "seattle", 2));
+        assertEquals(3, HotelSearchIndex.editDistance("abc", "xyz", 2));
+    }
+
+    private static List<String> ids(List<HotelSearchIndex.Suggestion> suggestions) {
+        return suggestions.stream().map(suggestion -> suggestion.hotel().getId()).toList();
+    }
+
+    private static Hotel hotel(String id, String name, String city, String state, double rating) {
+        var location = new Hotel.Location();
+        location.setCity(city);
+        location.setState(state);
+        location.setCountry("United States");
+        var hotel = new Hotel();
+        hotel.setId(id);
+        hotel.setName(name);
+        hotel.setRating(rating);
+        hotel.setLocation(location);
+        return hotel;
+    }
+}
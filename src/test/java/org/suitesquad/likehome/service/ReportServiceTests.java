@@ -0,0 +1,148 @@
+package org.suitesquad.likehome.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.data.mongodb.core.MongoTemplate;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.test.context.DynamicPropertyRegistry;
+import org.springframework.test.context.DynamicPropertySource;
+import org.suitesquad.likehome.EmbeddedMongo;
+import org.suitesquad.likehome.model.HotelDailyStats;
+import org.suitesquad.likehome.model.Reservation;
+import org.suitesquad.likehome.model.Room;
+import org.suitesquad.likehome.service.ReportService.Bookings;
+import org.suitesquad.likehome.service.ReportService.Interval;
+import org.suitesquad.likehome.service.ReportService.Occupancy;
+
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class ReportServiceTests {
+    private final ReportService reportService = new ReportService();
+
+    @Test
+    void rejectsInvalidOccupancyRanges() {
+        LocalDate day = LocalDate.of(2030, 1, 1);
+        assertThrows(IllegalArgumentException.class, () -> reportService.occupancy(null, day, null));
+        assertThrows(IllegalArgumentException.class, () -> reportService.occupancy(day, day, null));
+        assertThrows(IllegalArgumentException.class,
+                () -> reportService.occupancy(day, day.plusDays(ReportService.MAX_OCCUPANCY_NIGHTS + 1), null));
+        assertThrows(IllegalArgumentException.class,
+                () -> reportService.bookings(day.plusDays(1), day, null, Interval.TOTAL));
+    }
+
+    @Test
+    void parsesIntervals() {
+        assertEquals(Interval.TOTAL, Interval.of(null));
+        assertEquals(Interval.MONTH, Interval.of("month"));
+        assertThrows(IllegalArgumentException.class, () -> Interval.of("week"));
+    }
+
+    /**
+     * Runs the report pipelines against an {@link EmbeddedMongo}.
+     */
+    @Nested
+    @SpringBootTest
+    class Aggregations {
+        private static final LocalDate DAY = LocalDate.of(2030, 3, 1);
+
+        @BeforeAll
+        static void startMongo() {
+            EmbeddedMongo.assumeRunning();
+        }
+
+        @DynamicPropertySource
+        static void mongo(DynamicPropertyRegistry registry) {
+            EmbeddedMongo.register(registry);
+        }
+
+        @Autowired private ReportService reportService;
+        @Autowired private DailyStatsService dailyStatsService;
+        @Autowired private MongoTemplate mongoTemplate;
+
+        private final String hotelId = "report-test-" + UUID.randomUUID();
+
+        @AfterEach
+        void cleanUp() {
+            mongoTemplate.remove(new Query(Criteria.where("hotelId").is(hotelId)), Room.class);
+            mongoTemplate.remove(new Query(Criteria.where("hotelId").is(hotelId)), Reservation.class);
+            mongoTemplate.remove(new Query(Criteria.where("hotelId").is(hotelId)), HotelDailyStats.class);
+        }
+
+        @Test
+        void reportsOccupancy() {
+            mongoTemplate.insert(room(2));
+            mongoTemplate.insert(room(0)); // a single unit
+            mongoTemplate.insertAll(reservations());
+
+            try (Stream<Occupancy> rows = reportService.occupancy(DAY, DAY.plusDays(3), hotelId)) {
+                assertEquals(List.of(
+                        new Occupancy(hotelId, DAY, 1, 3, 1 / 3.0),
+                        new Occupancy(hotelId, DAY.plusDays(1), 2, 3, 2 / 3.0)), rows.toList());
+            }
+        }
+
+        @Test
+        void reportsBookings() {
+            for (Reservation reservation : reservations()) {
+                dailyStatsService.recordBooking(reservation);
+                if (reservation.getCancellationDate() != null) {
+                    dailyStatsService.recordCancellation(reservation);
+                }
+            }
+
+            try (Stream<Bookings> rows = reportService.bookings(DAY, DAY.plusDays(3), hotelId, Interval.TOTAL)) {
+                assertEquals(List.of(new Bookings(hotelId, null, 3, 1, 1 / 3.0, 3, 300, 0)), rows.toList());
+            }
+            try (Stream<Bookings> rows = reportService.bookings(null, null, hotelId, Interval.DAY)) {
+                assertEquals(List.of(
+                        new Bookings(hotelId, DAY, 2, 1, 0.5, 2, 200, 0),
+                        new Bookings(hotelId, DAY.plusDays(1), 1, 0, 0, 1, 100, 0)), rows.toList());
+            }
+        }
+
+        /**
+         * Two stays over the first two nights, and a cancelled one on the first night.
+         */
+        private List<Reservation> reservations() {
+            return List.of(reservation(0, 2, 200, null),
+                    reservation(1, 2, 100, null),
+                    reservation(0, 1, 80, new Date()));
+        }
+
+        private Room room(int availability) {
+            var room = new Room();
+            room.setHotelId(hotelId);
+            room.setAvailability(availability);
+            return room;
+        }
+
+        private Reservation reservation(int checkInDay, int checkOutDay, double totalPrice, Date cancellationDate) {
+            var reservation = new Reservation();
+            reservation.setHotelId(hotelId);
+            reservation.setRoomId(hotelId + "-room");
+            reservation.setCheckIn(toDate(DAY.plusDays(checkInDay)));
+            reservation.setCheckOut(toDate(DAY.plusDays(checkOutDay)));
+            reservation.setTotalPrice(totalPrice);
+            reservation.setPayment(new Reservation.Payment());
+            reservation.setCancellationDate(cancellationDate);
+            return reservation;
+        }
+
+        private static Date toDate(LocalDate day) {
+            return Date.from(day.atStartOfDay(ZoneOffset.UTC).toInstant());
+        }
+    }
+}
@@ -0,0 +1,55 @@
+package org.suitesquad.likehome.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+class RoomCalendarTests {
+
+    @Test
+    void bookUpToCapacity() {
+        var calendar = new RoomCalendar();
+        calendar.book(10, 13);
+        calendar.book(12, 14);
+        assertFalse(calendar.isFree(11, 13, 2)); // night 12 is full
+        assertTrue(calendar.isFree(13, 15, 2)); // check-out day is not a booked night
+        assertTrue(calendar.isFree(11, 13, 3));
+        assertEquals(2, calendar.bookedUnits(12));
+        assertEquals(0, calendar.bookedUnits(14));
+    }
+
+    @Test
+    void release() {
+        var calendar = new RoomCalendar();
+        calendar.book(10, 12);
+        assertFalse(calendar.isFree(11, 12, 1));
+        calendar.release(10, 12);
+        assertTrue(calendar.isFree(10, 12, 1));
+        assertEquals(0, calendar.bookedUnits(10));
+    }
+
+    @Test
+    void forEachNightSkipsReleasedNights() {
+        var calendar = new RoomCalendar();
+        calendar.book(10, 12);
+        calendar.book(11, 13);
+        calendar.release(10, 11);
+
+        var nights = new TreeMap<Long, Integer>();
+        calendar.forEachNight(nights::put);
+        assertEquals(Map.of(11L, 2, 12L, 1), nights);
+    }
+
+    @Test
+    void dropBefore() {
+        var calendar = new RoomCalendar();
+        calendar.book(10, 14);
+        calendar.dropBefore(12);
+        assertEquals(0, calendar.bookedUnits(11));
+        assertEquals(1, calendar.bookedUnits(12));
+        assertEquals(1, calendar.bookedUnits(13));
+    }
+}
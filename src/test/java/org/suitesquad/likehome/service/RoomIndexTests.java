@@ -0,0 +1,86 @@
+package org.suitesquad.likehome.service;
+
+import org.junit.jupiter.api.Test;
+import org.suitesquad.likehome.model.Room;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.IntStream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class RoomIndexTests {
+    private final RoomIndex index = new RoomIndex();
+
+    RoomIndexTests() {
+        index.index(List.of(
+                room("r3", "h2", "Family Room", 2, 3, 6, 2, 250),
+                room("r1", "h1", "Basic Suite", 1, 1, 2, 1, 120),
+                room("r2", "h1", "Oceanside Deluxe", 2, 2, 4, 1, 300),
+                room("r4", "h2", "Penthouse Suite", 3, 4, 8, 3, 900)));
+    }
+
+    @Test
+    void filtersHotelRooms() {
+        assertEquals(List.of("r1", "r2"), ids(index.find("h1", RoomIndex.Filter.NONE, false, null)));
+        assertEquals(List.of("r3", "r4"), ids(index.find("h2", filter(null, 0, 0), true, null)));
+        assertEquals(List.of("r2"), ids(index.find("h1", new RoomIndex.Filter(null, 2, 2, 4, 1, 0, 300), false, null)));
+        assertEquals(List.of(), ids(index.find("h3", RoomIndex.Filter.NONE, false, null)));
+    }
+
+    @Test
+    void searchesAllHotelsByPrice() {
+        assertEquals(List.of("r1", "r4"), ids(index.find(null, filter("SUITE", 0, 0), true, null)));
+        assertEquals(List.of("r3", "r2"), ids(index.find(null, filter(null, 200, 800), true, null)));
+        assertEquals(List.of("r1", "r3"), ids(index.find(null, RoomIndex.Filter.NONE, true, 2)));
+    }
+
+    @Test
+    void matchesAcrossBitsetWords() {
+        var rooms = new ArrayList<Room>();
+        IntStream.range(0, 200).forEach(i ->
+                rooms.add(room("r%03d".formatted(i), "h" + i % 3, "Room " + i, 1, 1 + i % 4, 2, 1, 1000 - i)));
+        index.index(rooms);
+        List<Room> found = index.find(null, new RoomIndex.Filter(null, 0, 4, 0, 0, 0, 900), true, null);
+        assertEquals(rooms.stream().filter(room -> room.getBeds() >= 4 && room.getPricePerNight() <= 900).count(),
+                found.size());
+        assertEquals("r199", found.getFirst().getId());
+        assertEquals(67, index.find("h0", RoomIndex.Filter.NONE, false, null).size());
+    }
+
+    @Test
+    void updatesSingleRooms() {
+        index.update("r5", "h1", room("r5", "h1", "Garden Suite", 1, 1, 2, 1, 250));
+        index.update("r2", "h1", room("r2", "h1", "Oceanside Deluxe", 2, 2, 4, 1, 100));
+        index.update("r4", null, null);
+        index.update("r6", "h0", room("r6", "h0", "Loft", 1, 1, 2, 1, 500));
+
+        assertEquals(List.of("r1", "r2", "r5"), ids(index.find("h1", RoomIndex.Filter.NONE, false, null)));
+        assertEquals(List.of("r3"), ids(index.find("h2", RoomIndex.Filter.NONE, false, null)));
+        assertEquals(List.of("r2", "r1", "r5", "r3", "r6"), ids(index.find(null, RoomIndex.Filter.NONE, true, null)));
+        assertEquals(List.of("r5"), ids(index.find(null, filter("suite", 200, 0), true, null)));
+        assertEquals(5, index.size());
+    }
+
+    private static RoomIndex.Filter filter(String name, double minPrice, double maxPrice) {
+        return new RoomIndex.Filter(name, 0, 0, 0, 0, minPrice, maxPrice > 0 ? maxPrice : Double.POSITIVE_INFINITY);
+    }
+
+    private static List<String> ids(List<Room> rooms) {
+        return rooms.stream().map(Room::getId).toList();
+    }
+
+    private static Room room(String id, String hotelId, String name, int baths, int beds, int guests, int bedrooms,
+                             double price) {
+        var room = new Room();
+        room.setId(id);
+        room.setHotelId(hotelId);
+        room.setName(name);
+        room.setBaths(baths);
+        room.setBeds(beds);
+        room.setGuests(guests);
+        room.setBedrooms(bedrooms);
+        room.setPricePerNight(price);
+        return room;
+    }
+}